@@ -3,9 +3,17 @@ package com.artificial;
 import com.artificial.ui.MainUserInterface;
 
 import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
 
 public class ApplicationMain {
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(MainUserInterface::new);
+        final long start = System.currentTimeMillis();
+        //preset quotes download in the background, the UI does not wait for them
+        final CompletableFuture<Void> presetsLoaded = MainUserInterface.prefetchPresets();
+        presetsLoaded.whenComplete((ignored, error) -> Debug.info("Presets loaded in " + (System.currentTimeMillis() - start) + "ms"));
+        SwingUtilities.invokeLater(() -> {
+            new MainUserInterface(presetsLoaded);
+            Debug.info("UI shown in " + (System.currentTimeMillis() - start) + "ms");
+        });
     }
 }
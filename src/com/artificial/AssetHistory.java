@@ -1,18 +1,19 @@
 package com.artificial;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class AssetHistory {
+    //dividends are announced rarely, a day old history is used without asking the server
+    private static final long DIVIDEND_TTL = TimeUnit.DAYS.toMillis(1);
     private final String symbol;
     private final Date startDate, endDate;
-    private List<Price> price_history = null;
+    private PriceSeries price_history = null;
     private List<Dividend> dividend_history = null;
 
     public AssetHistory(String symbol, Date startDate, Date endDate) {
@@ -33,13 +34,37 @@ public class AssetHistory {
         return endDate;
     }
 
-    public List<Price> getPriceHistory() {
+    public PriceSeries getPriceSeries() {
         if (price_history == null) {
             loadPriceHistory();
         }
         return price_history;
     }
 
+    /**
+     * Row views over getPriceSeries(), created on access
+     */
+    public List<Price> getPriceHistory() {
+        final PriceSeries series = getPriceSeries();
+        if (series == null) {
+            return null;
+        }
+        return new AbstractList<Price>() {
+            @Override
+            public Price get(final int index) {
+                if (index < 0 || index >= series.size()) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + series.size());
+                }
+                return new Price(series, index);
+            }
+
+            @Override
+            public int size() {
+                return series.size();
+            }
+        };
+    }
+
     public List<Dividend> getDividendHistory() {
         if (dividend_history == null) {
             loadDividendHistory();
@@ -49,18 +74,12 @@ public class AssetHistory {
 
     @NumberData(type = NumberType.PERCENT)
     public double[] getMonthlyEarnings() {
-        final List<Price> histories = getPriceHistory();
-        if (histories == null) {
+        final PriceSeries series = getPriceSeries();
+        if (series == null) {
             return null;
         }
         //oldest data is not included, because it would have 0% earnings
-        final double[] earnings = new double[histories.size() - 1];
-        for (int i = histories.size() - 2; i >= 0; i--) {
-            final Price previous = histories.get(i + 1);
-            final Price current = histories.get(i);
-            earnings[i] = ((current.getAdjustedClose() / previous.getAdjustedClose()) - 1) * 100;
-        }
-        return earnings;
+        return series.getReturns();
     }
 
     @NumberData(type = NumberType.PERCENT)
@@ -101,105 +120,51 @@ public class AssetHistory {
     }
 
     private void loadPriceHistory() {
-        final File file = FileManager.getFile(Price.fileName(symbol, startDate, endDate));
-        if (!file.exists()) {
-            try {
-                HttpUtil.downloadFile(Price.getUrl(symbol, startDate, endDate), file);
-            } catch (IOException e) {
-                Debug.info("Failed to download price history for " + symbol + "!");
-                e.printStackTrace();
-                return;
-            }
-        }
-        price_history = generatePriceHistory(file);
-    }
-
-    private List<Price> generatePriceHistory(final File file) {
-        final List<Price> ret = new LinkedList<>();
-        try (final BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            //Read first line to skip header
-            String line = reader.readLine();
-            while ((line = reader.readLine()) != null) {
-                final String[] data = line.split(",");
-                //yyyy-mm-dd
-                final String[] dateData = data[0].split("-");
-                final Date date = new Date(Integer.parseInt(dateData[0]), Integer.parseInt(dateData[1]), Integer.parseInt(dateData[2]));
-                ret.add(
-                        new Price(
-                                date,
-                                Double.parseDouble(data[1]),
-                                Double.parseDouble(data[2]),
-                                Double.parseDouble(data[3]),
-                                Double.parseDouble(data[4]),
-                                Long.parseLong(data[5]),
-                                Double.parseDouble(data[6])
-                        )
-                );
-            }
+        try {
+            price_history = HistoryStore.getPrices(symbol, startDate, endDate);
         } catch (IOException e) {
+            Debug.info("Failed to download price history for " + symbol + "!");
             e.printStackTrace();
-            return null;
         }
-        return ret;
     }
 
     private void loadDividendHistory() {
         final File file = FileManager.getFile(Dividend.fileName(symbol, startDate, endDate));
-        if (!file.exists()) {
-            try {
-                HttpUtil.downloadFile(Dividend.getUrl(symbol, startDate, endDate), file);
-            } catch (IOException e) {
-                Debug.info("Failed to download dividend history for " + symbol + "!");
-                e.printStackTrace();
-                return;
-            }
+        try {
+            HttpUtil.downloadCached(Dividend.getUrl(symbol, startDate, endDate), file, DIVIDEND_TTL);
+        } catch (IOException e) {
+            Debug.info("Failed to download dividend history for " + symbol + "!");
+            e.printStackTrace();
+            return;
         }
         dividend_history = generateDividendHistory(file);
     }
 
     private List<Dividend> generateDividendHistory(final File file) {
-        final List<Dividend> ret = new LinkedList<>();
-        try (final BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            //Read first line to skip header
-            String line = reader.readLine();
-            while ((line = reader.readLine()) != null) {
-                final String[] data = line.split(",");
-                //yyyy-mm-dd
-                final String[] dateData = data[0].split("-");
-                final Date date = new Date(Integer.parseInt(dateData[0]), Integer.parseInt(dateData[1]), Integer.parseInt(dateData[2]));
-                ret.add(
-                        new Dividend(
-                                date,
-                                Double.parseDouble(data[1])
-                        )
-                );
-            }
-        } catch (IOException e) {
+        try {
+            return YahooCsvParser.parseDividends(FileManager.read(file));
+        } catch (IOException | NumberFormatException e) {
             e.printStackTrace();
             return null;
         }
-        return ret;
     }
 
+    /**
+     * Single row of a PriceSeries
+     */
     public static class Price {
         //symbol - mm/dd/yyyy - mm/dd/yyy
         //months set as index (december = 11, january = 0)
         private static final String PRICE_HISTORY_URL = "https://chart.finance.yahoo.com/table.csv?s=%s&a=%d&b=%d&c=%d&d=%d&e=%d&f=%d&g=m&ignore=.csv";
-        private final Date date;
-        private final long volume;
-        private final double open, high, low, close, adjustedClose;
+        private final PriceSeries series;
+        private final int index;
 
-        public Price(Date date, double open, double high, double low, double close, long volume, double adjustedClose) {
-            this.date = date;
-            this.open = open;
-            this.high = high;
-            this.low = low;
-            this.close = close;
-            this.volume = volume;
-            this.adjustedClose = adjustedClose;
+        public Price(PriceSeries series, int index) {
+            this.series = series;
+            this.index = index;
         }
 
-        private static String getUrl(final String symbol, final Date startDate, final Date endDate) {
+        static String getUrl(final String symbol, final Date startDate, final Date endDate) {
             return String.format(
                     PRICE_HISTORY_URL,
                     symbol,
@@ -212,41 +177,37 @@ public class AssetHistory {
             );
         }
 
-        private static String fileName(final String symbol, final Date startDate, final Date endDate) {
-            return symbol + "_Price_" + startDate + "-" + endDate;
-        }
-
         public Date getDate() {
-            return date;
+            return series.getDate(index);
         }
 
         public long getVolume() {
-            return volume;
+            return series.getVolume(index);
         }
 
         public double getOpen() {
-            return open;
+            return series.getOpen(index);
         }
 
         public double getHigh() {
-            return high;
+            return series.getHigh(index);
         }
 
         public double getLow() {
-            return low;
+            return series.getLow(index);
         }
 
         public double getClose() {
-            return close;
+            return series.getClose(index);
         }
 
         public double getAdjustedClose() {
-            return adjustedClose;
+            return series.getAdjustedClose(index);
         }
 
         @Override
         public String toString() {
-            return "[com.artificial.AssetHistory.Price] date=" + date + ", open=" + open + ", high=" + high + ", low=" + low + ", close=" + close + ", volume=" + volume + ", adjClose=" + adjustedClose;
+            return "[com.artificial.AssetHistory.Price] date=" + getDate() + ", open=" + getOpen() + ", high=" + getHigh() + ", low=" + getLow() + ", close=" + getClose() + ", volume=" + getVolume() + ", adjClose=" + getAdjustedClose();
         }
     }
 
@@ -0,0 +1,119 @@
+package com.artificial;
+
+import java.io.*;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * Validators and freshness of a cached download, kept in a ".meta" properties file next to the cached file.
+ * A fresh file is served without contacting the server, a stale one is revalidated with a conditional GET.
+ */
+public class CacheMetadata {
+    public static final String FILE_EXTENSION = ".meta";
+    private static final String ETAG = "etag", LAST_MODIFIED = "lastModified", FETCHED = "fetched", TTL = "ttl";
+    private final String etag, lastModified;
+    private final long fetched, ttl;
+
+    public CacheMetadata(final String etag, final String lastModified, final long fetched, final long ttl) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.fetched = fetched;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Metadata of a response fetched now
+     */
+    public static CacheMetadata of(final HttpHeaders headers, final long ttl) {
+        return new CacheMetadata(headers.firstValue("ETag").orElse(null), headers.firstValue("Last-Modified").orElse(null), System.currentTimeMillis(), ttl);
+    }
+
+    /**
+     * Metadata of file, null if file does not exist.
+     * A file cached without metadata counts as fetched when it was last written, with no validators.
+     */
+    public static CacheMetadata read(final File file, final long ttl) {
+        if (!file.exists()) {
+            return null;
+        }
+        final File metaFile = metaFile(file);
+        if (metaFile.exists()) {
+            final Properties properties = new Properties();
+            try {
+                //through FileManager.read, so the metadata counts as used along with its file
+                properties.load(new StringReader(StandardCharsets.UTF_8.decode(FileManager.read(metaFile)).toString()));
+                return new CacheMetadata(properties.getProperty(ETAG), properties.getProperty(LAST_MODIFIED),
+                        Long.parseLong(properties.getProperty(FETCHED, "0")), Long.parseLong(properties.getProperty(TTL, String.valueOf(ttl))));
+            } catch (IOException | NumberFormatException e) {
+                Debug.info("Ignoring unreadable cache metadata " + metaFile);
+            }
+        }
+        return new CacheMetadata(null, null, file.lastModified(), ttl);
+    }
+
+    /**
+     * Records file as fetched now without validators, for files written from a response that covered several of them
+     */
+    public static void touch(final File file, final long ttl) throws IOException {
+        new CacheMetadata(null, null, System.currentTimeMillis(), ttl).write(file);
+    }
+
+    public static void delete(final File file) {
+        FileManager.delete(metaFile(file));
+    }
+
+    public void write(final File file) throws IOException {
+        final Properties properties = new Properties();
+        if (etag != null) {
+            properties.setProperty(ETAG, etag);
+        }
+        if (lastModified != null) {
+            properties.setProperty(LAST_MODIFIED, lastModified);
+        }
+        properties.setProperty(FETCHED, String.valueOf(fetched));
+        properties.setProperty(TTL, String.valueOf(ttl));
+        FileManager.write(metaFile(file), temp -> {
+            try (final Writer writer = Files.newBufferedWriter(temp)) {
+                properties.store(writer, null);
+            }
+        });
+    }
+
+    /**
+     * The same validators, fetched again now (the server answered 304 Not Modified)
+     */
+    public CacheMetadata revalidated(final HttpHeaders headers, final long ttl) {
+        return new CacheMetadata(headers.firstValue("ETag").orElse(etag), headers.firstValue("Last-Modified").orElse(lastModified), System.currentTimeMillis(), ttl);
+    }
+
+    public boolean isFresh() {
+        final long age = System.currentTimeMillis() - fetched;
+        return age >= 0 && age < ttl;
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getFetched() {
+        return fetched;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    private static File metaFile(final File file) {
+        return new File(file.getParentFile(), file.getName() + FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,125 @@
+package com.artificial;
+
+/**
+ * Cholesky factorization A = L * L^T of a symmetric positive semi-definite matrix,
+ * L is kept as a lower triangle packed row by row.
+ * Pivots that vanish relative to the largest diagonal element are treated as zero and lower the rank,
+ * so a singular covariance matrix (e.g. two perfectly correlated assets) is reported instead of producing garbage.
+ */
+public class CholeskyDecomposition {
+    //pivots below this fraction of the largest diagonal element count as zero
+    private static final double RELATIVE_TOLERANCE = 1e-12;
+    private final int size;
+    private final double[] l;
+    private int rank;
+
+    public CholeskyDecomposition(final SymmetricMatrix m) {
+        this.size = m.getSize();
+        this.l = new double[size * (size + 1) / 2];
+        double maxDiagonal = 0;
+        for (final double d : m.getDiagonal()) {
+            maxDiagonal = Math.max(maxDiagonal, Math.abs(d));
+        }
+        final double tolerance = RELATIVE_TOLERANCE * maxDiagonal;
+        for (int i = 0; i < size; i++) {
+            final int rowI = i * (i + 1) / 2;
+            for (int j = 0; j <= i; j++) {
+                final int rowJ = j * (j + 1) / 2;
+                double sum = m.get(i, j);
+                for (int k = 0; k < j; k++) {
+                    sum -= l[rowI + k] * l[rowJ + k];
+                }
+                if (i == j) {
+                    if (sum > tolerance) {
+                        l[rowI + i] = Math.sqrt(sum);
+                        rank++;
+                    } else if (sum < -tolerance) {
+                        throw new ArithmeticException("Matrix is not positive semi-definite");
+                    }
+                } else {
+                    final double pivot = l[rowJ + j];
+                    l[rowI + j] = pivot == 0 ? 0 : sum / pivot;
+                }
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public boolean isRankDeficient() {
+        return rank < size;
+    }
+
+    public double determinant() {
+        double d = 1;
+        for (int i = 0; i < size; i++) {
+            final double diagonal = l[i * (i + 1) / 2 + i];
+            d *= diagonal * diagonal;
+        }
+        return d;
+    }
+
+    /**
+     * Solves A * X = rhs, rhs may have any number of columns
+     */
+    public Matrix solve(final Matrix rhs) {
+        if (rhs.getRows() != size) {
+            throw new IllegalArgumentException("Required " + size + " rows, found " + rhs.getRows());
+        }
+        final double[] x = rhs.toFlatArray();
+        substitute(x, rhs.getColumns());
+        return new Matrix(size, rhs.getColumns(), x);
+    }
+
+    public Matrix inverse() {
+        final double[] x = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            x[i * size + i] = 1;
+        }
+        substitute(x, size);
+        return new Matrix(size, size, x);
+    }
+
+    //forward substitution with L, then back substitution with L^T, x is row-major with cols columns
+    private void substitute(final double[] x, final int cols) {
+        if (isRankDeficient()) {
+            throw new ArithmeticException("Matrix is rank deficient, rank " + rank + " of " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            final int rowI = i * (i + 1) / 2, xi = i * cols;
+            for (int j = 0; j < i; j++) {
+                final double factor = l[rowI + j];
+                if (factor == 0) continue;
+                final int xj = j * cols;
+                for (int col = 0; col < cols; col++) {
+                    x[xi + col] -= factor * x[xj + col];
+                }
+            }
+            final double pivot = l[rowI + i];
+            for (int col = 0; col < cols; col++) {
+                x[xi + col] /= pivot;
+            }
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            final int rowI = i * (i + 1) / 2, xi = i * cols;
+            final double pivot = l[rowI + i];
+            for (int col = 0; col < cols; col++) {
+                x[xi + col] /= pivot;
+            }
+            for (int j = 0; j < i; j++) {
+                final double factor = l[rowI + j];
+                if (factor == 0) continue;
+                final int xj = j * cols;
+                for (int col = 0; col < cols; col++) {
+                    x[xj + col] -= factor * x[xi + col];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.artificial;
+
+import java.util.Collection;
+
+/**
+ * Covariance matrix, correlation matrix and volatilities of a set of return series, computed in one pass.
+ * Series are aligned on their common (most recent) window, demeaned once into a panel, and the
+ * covariance is taken as X^T * X / T over tiles of assets, filling only the upper half.
+ */
+public class CovarianceEstimate {
+    //assets per tile, each tile keeps BLOCK_SIZE series of T doubles hot in cache
+    private static final int BLOCK_SIZE = 32;
+    private final SymmetricMatrix covariance, correlation;
+    private final double[] volatilities;
+
+    /**
+     * @param returns one row per asset, newest observation first as returned by AssetHistory.getMonthlyEarnings()
+     */
+    public CovarianceEstimate(final double[][] returns) {
+        final int n = returns.length;
+        int observations = Integer.MAX_VALUE;
+        for (final double[] r : returns) {
+            observations = Math.min(observations, r.length);
+        }
+        final int t = n == 0 ? 0 : observations;
+        //asset-major demeaned panel, row i holds the t observations of asset i contiguously
+        final double[] panel = new double[n * t];
+        for (int i = 0; i < n; i++) {
+            final double[] r = returns[i];
+            double mean = 0;
+            for (int k = 0; k < t; k++) {
+                mean += r[k];
+            }
+            mean /= t;
+            final int row = i * t;
+            for (int k = 0; k < t; k++) {
+                panel[row + k] = r[k] - mean;
+            }
+        }
+        covariance = new SymmetricMatrix(n);
+        for (int bi = 0; bi < n; bi += BLOCK_SIZE) {
+            final int iMax = Math.min(bi + BLOCK_SIZE, n);
+            for (int bj = bi; bj < n; bj += BLOCK_SIZE) {
+                final int jMax = Math.min(bj + BLOCK_SIZE, n);
+                for (int i = bi; i < iMax; i++) {
+                    final int rowI = i * t;
+                    for (int j = Math.max(i, bj); j < jMax; j++) {
+                        final int rowJ = j * t;
+                        double sum = 0;
+                        for (int k = 0; k < t; k++) {
+                            sum += panel[rowI + k] * panel[rowJ + k];
+                        }
+                        covariance.put(sum / t, i, j);
+                    }
+                }
+            }
+        }
+        volatilities = new double[n];
+        for (int i = 0; i < n; i++) {
+            volatilities[i] = Math.sqrt(covariance.get(i, i));
+        }
+        correlation = new SymmetricMatrix(n);
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                correlation.put(covariance.get(i, j) / (volatilities[i] * volatilities[j]), i, j);
+            }
+        }
+    }
+
+    public static CovarianceEstimate of(final Collection<? extends Asset> assets, final int years) {
+        final double[][] returns = new double[assets.size()][];
+        int i = 0;
+        for (final Asset asset : assets) {
+            returns[i++] = asset.getHistory(years).getMonthlyEarnings();
+        }
+        return new CovarianceEstimate(returns);
+    }
+
+    public SymmetricMatrix getCovariance() {
+        return covariance;
+    }
+
+    public SymmetricMatrix getCorrelation() {
+        return correlation;
+    }
+
+    /**
+     * Standard deviation of each asset over the common window, in the same order as the input
+     */
+    public double[] getVolatilities() {
+        return volatilities;
+    }
+}
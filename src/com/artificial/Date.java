@@ -9,6 +9,19 @@ public class Date {
         this.day = day;
     }
 
+    public static Date ofEpochDay(final int epochDay) {
+        //Howard Hinnant's civil_from_days, inverse of toEpochDay()
+        final int z = epochDay + 719468;
+        final int era = Math.floorDiv(z, 146097);
+        final int dayOfEra = z - era * 146097;
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int mp = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        final int month = mp < 10 ? mp + 3 : mp - 9;
+        return new Date(yearOfEra + era * 400 + (month <= 2 ? 1 : 0), month, day);
+    }
+
     public int getYear() {
         return year;
     }
@@ -21,6 +34,23 @@ public class Date {
         return day;
     }
 
+    /**
+     * Days since 1970-01-01, out of range days roll over into the next month (e.g. 2023/02/29 = 2023/03/01)
+     */
+    public int toEpochDay() {
+        return toEpochDay(year, month, day);
+    }
+
+    public static int toEpochDay(final int year, final int month, final int day) {
+        //Howard Hinnant's days_from_civil, proleptic Gregorian calendar
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(y, 400);
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
     public String formatted() {
         return year + "/" + (month < 10 ? "0" : "") + month + "/" + (day < 10 ? "0" : "") + day;
     }
@@ -30,6 +60,11 @@ public class Date {
         return obj != null && obj instanceof Date && ((Date) obj).year == year && ((Date) obj).month == month && ((Date) obj).day == day;
     }
 
+    @Override
+    public int hashCode() {
+        return (year * 12 + month) * 31 + day;
+    }
+
     @Override
     public String toString() {
         return year + "_" + month + "_" + day;
@@ -16,6 +16,22 @@ public class DateKey {
         return end;
     }
 
+    /**
+     * Both dates as epoch days packed into one long, start in the high half
+     */
+    public static long pack(final Date start, final Date end) {
+        return ((long) start.toEpochDay() << 32) | (end.toEpochDay() & 0xFFFFFFFFL);
+    }
+
+    public long pack() {
+        return pack(start, end);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(pack());
+    }
+
     @Override
     public boolean equals(Object obj) {
         return obj != null && obj instanceof DateKey && start.equals(((DateKey) obj).getStart()) && end.equals(((DateKey) obj).getEnd());
@@ -1,20 +1,333 @@
 package com.artificial;
 
-import java.io.File;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.regex.Pattern;
 
+/**
+ * Cache directory in java.io.tmpdir/PortfolioOptimization, spread over 256 shard subdirectories.
+ * Files are written through a temporary file renamed into place, and the least recently used ones are
+ * deleted once the cache holds more than MAX_BYTES. Access order is kept in a persistent index.
+ */
 public class FileManager {
     public static final String TEMP_FOLDER = System.getProperty("java.io.tmpdir");
+    public static final String CACHE_FOLDER = "PortfolioOptimization";
+    private static final long MAX_BYTES = Long.getLong("portfolio.cache.maxBytes", 512L * 1024 * 1024);
+    //files at least this large are memory-mapped instead of read onto the heap
+    private static final long MAP_THRESHOLD = 64 * 1024;
+    private static final String INDEX_FILE = "cache.index", TEMP_EXTENSION = ".tmp";
+    private static final int INDEX_VERSION = 1;
+    //the index is saved after this many writes, on eviction and at exit
+    private static final int SAVE_INTERVAL = 64;
+    //files of the unsharded layout, e.g. MSFT_QUOTE_2014-05-01 or MSFT_Price.bin; anything else in the root is left alone
+    private static final Pattern SHARD = Pattern.compile("[0-9a-f]{2}");
+    private static final Pattern LEGACY_FILE = Pattern.compile(".+_(QUOTE|Price|Div)([_.].*)?");
+    private static final File ROOT = getFolder(CACHE_FOLDER);
+    private static final Object LOCK = new Object();
+    //serializes saveIndex, so an older snapshot never replaces a newer one
+    private static final Object SAVE_LOCK = new Object();
+    //relative path ("ab/NAME") to entry, in access order
+    private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<>(256, 0.75f, true);
+    private static long bytes, hits, misses, evictions;
+    private static int unsavedWrites;
+
+    static {
+        loadIndex();
+        Runtime.getRuntime().addShutdownHook(new Thread(FileManager::saveIndex, "FileManager-index"));
+    }
 
     public static File getFile(final String folderName, final String fileName) {
+        return new File(getFolder(folderName), fileName);
+    }
+
+    /**
+     * Cache file for fileName, inside its shard. Only names the file, the shard folder is created when it is written.
+     */
+    public static File getFile(final String fileName) {
+        return new File(ROOT, shard(fileName) + File.separator + fileName);
+    }
+
+    /**
+     * Writes file atomically: writer fills a temporary file of its own next to it, which then replaces file,
+     * so concurrent writers of the same file never share a temporary file. Nothing is left behind if writer fails.
+     * Files inside the cache are added to the index.
+     */
+    public static void write(final File file, final TempFileWriter writer) throws IOException {
+        final File folder = file.getAbsoluteFile().getParentFile();
+        folder.mkdirs();
+        final Path temp = Files.createTempFile(folder.toPath(), file.getName(), TEMP_EXTENSION);
+        try {
+            writer.write(temp);
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        final String path = relativePath(file);
+        if (path != null) {
+            written(path, file.length());
+        }
+    }
+
+    /**
+     * Contents of file, memory-mapped if it is at least MAP_THRESHOLD bytes. Counts as the most recent use of a
+     * cache file, but not as a hit: that is up to the lookup that decided the cached file can be used, see countHit.
+     */
+    public static ByteBuffer read(final File file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final String path = relativePath(file);
+            if (path != null) {
+                synchronized (LOCK) {
+                    final Entry entry = ENTRIES.get(path);
+                    if (entry != null) {
+                        entry.accessed = System.currentTimeMillis();
+                    }
+                }
+            }
+            final long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            final ByteBuffer ret = ByteBuffer.allocate((int) size);
+            while (ret.hasRemaining() && channel.read(ret) != -1) ;
+            ret.flip();
+            return ret;
+        }
+    }
+
+    /**
+     * Counts a lookup the cache served, e.g. a cached download that was fresh or not modified
+     */
+    public static void countHit() {
+        synchronized (LOCK) {
+            hits++;
+        }
+    }
+
+    /**
+     * Counts a lookup the cache could not serve, e.g. a download for a file that was not cached
+     */
+    public static void countMiss() {
+        synchronized (LOCK) {
+            misses++;
+        }
+    }
+
+    public static void delete(final File file) {
+        file.delete();
+        final String path = relativePath(file);
+        if (path != null) {
+            synchronized (LOCK) {
+                final Entry entry = ENTRIES.remove(path);
+                if (entry != null) {
+                    bytes -= entry.size;
+                }
+            }
+        }
+    }
+
+    public static long getHits() {
+        synchronized (LOCK) {
+            return hits;
+        }
+    }
+
+    public static long getMisses() {
+        synchronized (LOCK) {
+            return misses;
+        }
+    }
+
+    public static long getEvictions() {
+        synchronized (LOCK) {
+            return evictions;
+        }
+    }
+
+    /**
+     * Bytes currently held by indexed cache files
+     */
+    public static long getSize() {
+        synchronized (LOCK) {
+            return bytes;
+        }
+    }
+
+    public static int getFileCount() {
+        synchronized (LOCK) {
+            return ENTRIES.size();
+        }
+    }
+
+    public static String getStatistics() {
+        synchronized (LOCK) {
+            return "[com.artificial.FileManager] files=" + ENTRIES.size() + ", bytes=" + bytes + "/" + MAX_BYTES + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+        }
+    }
+
+    private static void written(final String path, final long size) {
+        boolean evicted = false, save;
+        synchronized (LOCK) {
+            final Entry entry = ENTRIES.remove(path);
+            if (entry != null) {
+                bytes -= entry.size;
+            }
+            ENTRIES.put(path, new Entry(size, System.currentTimeMillis()));
+            bytes += size;
+            //the newest file is never evicted, even if it alone exceeds the budget
+            while (bytes > MAX_BYTES && ENTRIES.size() > 1) {
+                final String victim = ENTRIES.keySet().iterator().next();
+                evict(victim);
+                //cache metadata is useless without its file
+                evict(victim + CacheMetadata.FILE_EXTENSION);
+                evicted = true;
+            }
+            save = evicted || ++unsavedWrites >= SAVE_INTERVAL;
+        }
+        if (save) {
+            saveIndex();
+        }
+    }
+
+    private static void evict(final String path) {
+        final Entry entry = ENTRIES.remove(path);
+        if (entry != null) {
+            new File(ROOT, path).delete();
+            bytes -= entry.size;
+            evictions++;
+        }
+    }
+
+    private static File getFolder(final String folderName) {
         final File folder = new File(TEMP_FOLDER, folderName);
         if (!folder.exists()) {
             folder.mkdir();
         }
-        return new File(folder, fileName);
+        return folder;
     }
 
-    public static File getFile(final String fileName) {
-        return getFile("PortfolioOptimization", fileName);
+    private static String shard(final String fileName) {
+        final int hash = fileName.hashCode();
+        final String hex = Integer.toHexString((hash ^ (hash >>> 16)) & 0xFF);
+        return hex.length() == 1 ? "0" + hex : hex;
     }
 
+    //path of file relative to the cache root if it is directly inside a shard, otherwise null
+    private static String relativePath(final File file) {
+        final File shard = file.getAbsoluteFile().getParentFile();
+        if (shard == null || !ROOT.getAbsoluteFile().equals(shard.getParentFile())) {
+            return null;
+        }
+        return shard.getName() + File.separator + file.getName();
+    }
+
+    /**
+     * Rebuilds the index from the shard folders, ordered by the access times saved in the index file.
+     * Files the index does not know (e.g. written before a crash) count as last used when they were modified,
+     * leftover temporary files and files this cache wrote in the unsharded layout are deleted.
+     */
+    private static void loadIndex() {
+        final Map<String, Long> accessed = new HashMap<>();
+        final File indexFile = new File(ROOT, INDEX_FILE);
+        if (indexFile.exists()) {
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (in.readInt() == INDEX_VERSION) {
+                    for (int i = in.readInt(); i > 0; i--) {
+                        final String path = in.readUTF();
+                        accessed.put(path, in.readLong());
+                    }
+                }
+            } catch (IOException e) {
+                Debug.info("Cache index unreadable, rebuilding it from the cache folder");
+            }
+        }
+        final List<Map.Entry<String, Entry>> found = new ArrayList<>();
+        final File[] children = ROOT.listFiles();
+        for (final File child : children == null ? new File[0] : children) {
+            if (!child.isDirectory() || !SHARD.matcher(child.getName()).matches()) {
+                if (child.isFile() && (isIndexTemp(child.getName()) || LEGACY_FILE.matcher(child.getName()).matches())) {
+                    child.delete();
+                }
+                continue;
+            }
+            final File[] files = child.listFiles();
+            for (final File file : files == null ? new File[0] : files) {
+                if (file.getName().endsWith(TEMP_EXTENSION)) {
+                    file.delete();
+                    continue;
+                }
+                final String path = child.getName() + File.separator + file.getName();
+                final Long access = accessed.get(path);
+                found.add(new AbstractMap.SimpleEntry<>(path, new Entry(file.length(), access != null ? access : file.lastModified())));
+            }
+        }
+        found.sort(Comparator.comparingLong(e -> e.getValue().accessed));
+        synchronized (LOCK) {
+            for (final Map.Entry<String, Entry> entry : found) {
+                ENTRIES.put(entry.getKey(), entry.getValue());
+                bytes += entry.getValue().size;
+            }
+        }
+    }
+
+    private static boolean isIndexTemp(final String name) {
+        return name.startsWith(INDEX_FILE) && name.endsWith(TEMP_EXTENSION);
+    }
+
+    //called from writers outside LOCK and from the shutdown hook, each save writes a temporary file of its own
+    private static void saveIndex() {
+        synchronized (SAVE_LOCK) {
+            final List<Map.Entry<String, Long>> snapshot = new ArrayList<>();
+            synchronized (LOCK) {
+                for (final Map.Entry<String, Entry> entry : ENTRIES.entrySet()) {
+                    snapshot.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().accessed));
+                }
+                unsavedWrites = 0;
+            }
+            final File indexFile = new File(ROOT, INDEX_FILE);
+            Path temp = null;
+            try {
+                temp = Files.createTempFile(ROOT.toPath(), INDEX_FILE, TEMP_EXTENSION);
+                try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(INDEX_VERSION);
+                    out.writeInt(snapshot.size());
+                    for (final Map.Entry<String, Long> entry : snapshot) {
+                        out.writeUTF(entry.getKey());
+                        out.writeLong(entry.getValue());
+                    }
+                }
+                Files.move(temp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Debug.info("Failed to save the cache index!");
+                e.printStackTrace();
+            } finally {
+                if (temp != null) {
+                    temp.toFile().delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the temporary file that FileManager.write moves into place
+     */
+    public interface TempFileWriter {
+        void write(Path temp) throws IOException;
+    }
+
+    private static class Entry {
+        private final long size;
+        //epoch millis of the last write or, once the index is saved, of the last hit
+        private long accessed;
+
+        private Entry(final long size, final long accessed) {
+            this.size = size;
+            this.accessed = accessed;
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package com.artificial;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded least recently used cache of AssetHistory instances keyed by DateKey.pack(start, end).
+ */
+public class HistoryCache {
+    private final int maxSize;
+    private final Map<Long, AssetHistory> histories;
+    private long hits, misses, evictions;
+
+    public HistoryCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.histories = new LinkedHashMap<Long, AssetHistory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, AssetHistory> eldest) {
+                if (size() > HistoryCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized AssetHistory get(final Date start, final Date end, final Supplier<AssetHistory> loader) {
+        final long key = DateKey.pack(start, end);
+        AssetHistory history = histories.get(key);
+        if (history != null) {
+            hits++;
+            return history;
+        }
+        misses++;
+        history = loader.get();
+        histories.put(key, history);
+        return history;
+    }
+
+    public synchronized int size() {
+        return histories.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        histories.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "[com.artificial.HistoryCache] size=" + histories.size() + "/" + maxSize + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+    }
+}
@@ -0,0 +1,172 @@
+package com.artificial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One master price series per symbol, shared by every AssetHistory window of that symbol.
+ * The master only grows: a window reaching outside the covered range downloads just the missing head or tail
+ * and merges it in, and each window is returned as a slice of the master without copying.
+ * Head and tail downloads overlap the master by a month, if the adjusted closes there differ (a dividend or split
+ * since the master was downloaded) the whole range is downloaded again instead of merging.
+ */
+public class HistoryStore {
+    //a master whose tail was fetched less than this ago is not extended for windows ending after it
+    private static final long PRICE_TTL = TimeUnit.HOURS.toMillis(6);
+    //relative difference of adjustment factors still taken as equal, the csv rounds prices to cents
+    //while a dividend usually rescales by more than a percent
+    private static final double ADJUSTMENT_TOLERANCE = 1e-3;
+    private static final Map<String, Master> MASTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Monthly prices of symbol for the months from start to end
+     */
+    public static PriceSeries getPrices(final String symbol, final Date start, final Date end) throws IOException {
+        //monthly rows are dated on the first of the month, so the window starts at the month containing start
+        final int startDay = Date.toEpochDay(start.getYear(), start.getMonth(), 1), endDay = end.toEpochDay();
+        return MASTERS.computeIfAbsent(symbol.toUpperCase(), Master::new).get(startDay, endDay);
+    }
+
+    private static class Master {
+        private final String symbol;
+        private final File seriesFile, rangeFile;
+        private PriceSeries series;
+        //epoch days that have been requested from the server, rows exist only for trading months inside it
+        private int coveredFrom, coveredTo;
+        //when the tail was last downloaded, epoch millis
+        private long fetched;
+        private boolean loaded;
+
+        private Master(final String symbol) {
+            this.symbol = symbol;
+            this.seriesFile = FileManager.getFile(symbol + "_Price" + PriceSeries.FILE_EXTENSION);
+            this.rangeFile = FileManager.getFile(symbol + "_Price.range");
+        }
+
+        private synchronized PriceSeries get(final int startDay, final int endDay) throws IOException {
+            if (!loaded) {
+                load();
+                loaded = true;
+            }
+            final boolean extendTail = series != null && endDay > coveredTo && !isTailFresh();
+            if (series == null) {
+                series = download(startDay, endDay);
+                coveredFrom = startDay;
+                coveredTo = endDay;
+                fetched = System.currentTimeMillis();
+                save();
+            } else if (startDay < coveredFrom || extendTail) {
+                final int from = Math.min(startDay, coveredFrom), to = Math.max(endDay, coveredTo);
+                boolean consistent = true;
+                if (extendTail) {
+                    //the last known month may have been partial, the fresh download replaces it
+                    //the month before it is complete and overlaps too, so a rewrite of the adjusted closes shows there
+                    final PriceSeries tail = download(monthBefore(coveredTo), endDay);
+                    consistent = sameAdjustment(tail, series);
+                    if (consistent) {
+                        series = PriceSeries.merge(tail, series);
+                        coveredTo = endDay;
+                        fetched = System.currentTimeMillis();
+                    }
+                }
+                if (consistent && startDay < coveredFrom) {
+                    //up to and including the first known month, which overlaps
+                    final PriceSeries head = download(startDay, coveredFrom);
+                    consistent = sameAdjustment(head, series);
+                    if (consistent) {
+                        series = PriceSeries.merge(series, head);
+                        coveredFrom = startDay;
+                    }
+                }
+                if (!consistent) {
+                    //a dividend or split rescaled the adjusted closes, old and new rows must not be mixed
+                    Debug.info("Adjusted closes of " + symbol + " changed, downloading the whole history again");
+                    series = download(from, to);
+                    coveredFrom = from;
+                    coveredTo = to;
+                    fetched = System.currentTimeMillis();
+                }
+                save();
+            }
+            return series.between(startDay, endDay);
+        }
+
+        //the tail reached up to the day it was fetched and that was within PRICE_TTL, so nothing newer is expected yet
+        //(the tail URL carries the end date, so it cannot be revalidated with a conditional request)
+        private boolean isTailFresh() {
+            final long age = System.currentTimeMillis() - fetched;
+            return age >= 0 && age < PRICE_TTL && coveredTo >= Math.floorDiv(fetched, TimeUnit.DAYS.toMillis(1)) - 1;
+        }
+
+        //first day of the month before the one containing epochDay
+        private static int monthBefore(final int epochDay) {
+            final Date date = Date.ofEpochDay(epochDay);
+            return date.getMonth() == 1 ? Date.toEpochDay(date.getYear() - 1, 12, 1) : Date.toEpochDay(date.getYear(), date.getMonth() - 1, 1);
+        }
+
+        //whether the rows of fetched that are also in stored were adjusted by the same factor in both
+        //the factor rather than the adjusted close itself is compared, as the close of a partial month moves
+        private static boolean sameAdjustment(final PriceSeries fetched, final PriceSeries stored) {
+            for (int i = 0; i < fetched.size(); i++) {
+                final PriceSeries row = stored.between(fetched.getEpochDay(i), fetched.getEpochDay(i));
+                if (row.size() == 1) {
+                    final double factor = fetched.getAdjustedClose(i) / fetched.getClose(i), storedFactor = row.getAdjustedClose(0) / row.getClose(0);
+                    if (Math.abs(factor - storedFactor) > ADJUSTMENT_TOLERANCE * Math.abs(storedFactor)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private PriceSeries download(final int startDay, final int endDay) throws IOException {
+            final Date start = Date.ofEpochDay(startDay), end = Date.ofEpochDay(endDay);
+            try {
+                //the parser needs random access, so the (few kilobyte) body is read into memory, the csv never touches the disk
+                return HttpUtil.download(AssetHistory.Price.getUrl(symbol, start, end), in -> YahooCsvParser.parsePrices(ByteBuffer.wrap(in.readAllBytes())));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed price history for " + symbol, e);
+            }
+        }
+
+        private void load() {
+            if (!seriesFile.exists() || !rangeFile.exists()) {
+                FileManager.countMiss();
+                return;
+            }
+            try {
+                final ByteBuffer range = FileManager.read(rangeFile);
+                final int from = range.getInt(), to = range.getInt();
+                final long fetchedAt = range.getLong();
+                series = PriceSeries.read(seriesFile);
+                coveredFrom = from;
+                coveredTo = to;
+                fetched = fetchedAt;
+                FileManager.countHit();
+            } catch (IOException | RuntimeException e) {
+                Debug.info("Failed to read cached price history for " + symbol + ", downloading again");
+                FileManager.countMiss();
+                series = null;
+                FileManager.delete(seriesFile);
+                FileManager.delete(rangeFile);
+            }
+        }
+
+        //series first, then range, so the range on disk never claims more than the series holds
+        private void save() {
+            try {
+                series.write(seriesFile);
+                final byte[] range = ByteBuffer.allocate(2 * Integer.BYTES + Long.BYTES).putInt(coveredFrom).putInt(coveredTo).putLong(fetched).array();
+                FileManager.write(rangeFile, temp -> Files.write(temp, range));
+            } catch (IOException e) {
+                Debug.info("Failed to cache price history for " + symbol + "!");
+                e.printStackTrace();
+            }
+        }
+    }
+}
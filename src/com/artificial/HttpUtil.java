@@ -1,64 +1,225 @@
 package com.artificial;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
 
 /**
- * A utility that downloads a file from a URL.
- *
- * @author www.codejava.net
+ * Downloads over one shared HttpClient, so connections are kept alive and reused between requests.
+ * At most MAX_IN_FLIGHT requests run at once, failed requests (connection errors, 429 and 5xx) are retried with
+ * exponential backoff, and responses are requested gzip compressed and decoded while streaming.
  */
 public class HttpUtil {
-    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("portfolio.http.maxInFlight", 8);
+    private static final int MAX_ATTEMPTS = Integer.getInteger("portfolio.http.maxAttempts", 4);
+    private static final long INITIAL_BACKOFF_MS = 250;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    private static final int HTTP_OK = 200, HTTP_NOT_MODIFIED = 304;
+    private static final Semaphore IN_FLIGHT = new Semaphore(MAX_IN_FLIGHT, true);
 
     public static String downloadString(String fileUrl) throws IOException {
-        URL url = new URL(fileUrl);
-        HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
-        int responseCode = httpConn.getResponseCode();
-        final StringWriter outputStream = new StringWriter();
-        // always check HTTP response code first
-        if (responseCode == HttpURLConnection.HTTP_OK) {
-            final BufferedReader inputStream = new BufferedReader(new InputStreamReader(httpConn.getInputStream(), "UTF-8"));
-
-            String line;
-            while ((line = inputStream.readLine()) != null) {
-                outputStream.write(line + System.lineSeparator());
+        return download(fileUrl, in -> new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Streams the body into file through FileManager.write, so a failed download leaves nothing behind
+     */
+    public static void downloadFile(String fileURL, File file) throws IOException {
+        download(fileURL, in -> {
+            FileManager.write(file, temp -> Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING));
+            return null;
+        });
+    }
+
+    /**
+     * Hands the decoded response body to handler while it is being received.
+     * Only a response that fails before handler is called is retried, an exception from handler fails the download
+     * at once, as the body may have been partly consumed.
+     */
+    public static <T> T download(final String url, final BodyHandler<T> handler) throws IOException {
+        return send(newRequest(url).build(), (response, body) -> handler.handle(body));
+    }
+
+    /**
+     * Keeps file in sync with url: a file younger than its TTL is used as is, an older one is revalidated
+     * with If-None-Match / If-Modified-Since and only downloaded again if the server has a newer version.
+     * If the server cannot be reached a stale file is kept.
+     * Counts a cache hit if file is used as it was, otherwise a miss.
+     *
+     * @param ttl milliseconds a fetched (or revalidated) file is used without asking the server
+     * @return true if a new body was downloaded
+     */
+    public static boolean downloadCached(final String url, final File file, final long ttl) throws IOException {
+        final CacheMetadata cached = CacheMetadata.read(file, ttl);
+        if (cached != null && cached.isFresh()) {
+            FileManager.countHit();
+            return false;
+        }
+        final HttpRequest.Builder request = newRequest(url);
+        if (cached != null && cached.getEtag() != null) {
+            request.header("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            request.header("If-Modified-Since", cached.getLastModified());
+        }
+        final boolean[] downloaded = {false};
+        try {
+            final CacheMetadata fetched = send(request.build(), (response, body) -> {
+                if (response.statusCode() == HTTP_NOT_MODIFIED) {
+                    if (cached == null || !cached.hasValidators()) {
+                        throw new IOException("Server replied 304 Not Modified to a request without validators");
+                    }
+                    return cached.revalidated(response.headers(), ttl);
+                }
+                FileManager.write(file, temp -> Files.copy(body, temp, StandardCopyOption.REPLACE_EXISTING));
+                downloaded[0] = true;
+                return CacheMetadata.of(response.headers(), ttl);
+            });
+            fetched.write(file);
+            if (downloaded[0]) {
+                FileManager.countMiss();
+            } else {
+                FileManager.countHit();
             }
-            inputStream.close();
-            //Debug.info("String downloaded from " + fileUrl);
-        } else {
-            httpConn.disconnect();
-            throw new IOException("No file to download. Server replied with HTTP code: " + responseCode);
+            return downloaded[0];
+        } catch (IOException e) {
+            if (cached == null || downloaded[0]) {
+                FileManager.countMiss();
+                throw e;
+            }
+            Debug.info("Failed to revalidate " + file.getName() + ", using the cached copy");
+            FileManager.countHit();
+            return false;
         }
-        httpConn.disconnect();
-        outputStream.close();
-        return outputStream.toString();
     }
 
-    public static void downloadFile(String fileURL, File file) throws IOException {
-        URL url = new URL(fileURL);
-        HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
-        int responseCode = httpConn.getResponseCode();
-        // always check HTTP response code first
-        if (responseCode == HttpURLConnection.HTTP_OK) {
-            // opens input stream from the HTTP connection
-            InputStream inputStream = httpConn.getInputStream();
-            // opens an output stream to save into file
-            FileOutputStream outputStream = new FileOutputStream(file);
-
-            int bytesRead;
-            byte[] buffer = new byte[BUFFER_SIZE];
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+    //200, and 304 for conditional requests, go to handler, other responses fail.
+    //Only transport errors, 429 and 5xx are retried, a body that cannot be decoded or a failing handler (parse or disk error) are not
+    private static <T> T send(final HttpRequest request, final ResponseHandler<T> handler) throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                backoff(attempt);
+            }
+            acquire();
+            try {
+                final HttpResponse<InputStream> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                try (final InputStream body = decode(response)) {
+                    final int responseCode = response.statusCode();
+                    // always check HTTP response code first
+                    if (responseCode == HTTP_OK || responseCode == HTTP_NOT_MODIFIED) {
+                        try {
+                            return handler.handle(response, body);
+                        } catch (IOException e) {
+                            throw new NotRetriedException(e);
+                        }
+                    }
+                    failure = new IOException("No file to download. Server replied with HTTP code: " + responseCode);
+                    if (responseCode != 429 && responseCode < 500) {
+                        throw failure;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + request.uri());
+            } catch (NotRetriedException e) {
+                throw (IOException) e.getCause();
+            } catch (IOException e) {
+                if (e == failure) {
+                    throw e;
+                }
+                failure = e;
+            } finally {
+                IN_FLIGHT.release();
+            }
+        }
+        throw failure;
+    }
+
+    private static HttpRequest.Builder newRequest(final String url) {
+        return HttpRequest.newBuilder(toUri(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+    }
+
+    //percent-encodes characters java.net.URI rejects (e.g. the ^ of index symbols), existing escapes are kept
+    private static URI toUri(final String url) {
+        final StringBuilder ret = new StringBuilder(url.length());
+        for (final byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if (c > ' ' && c < 0x7F && "\"<>\\^`{|}".indexOf(c) < 0) {
+                ret.append(c);
+            } else {
+                ret.append('%').append(Character.toUpperCase(Character.forDigit((c >> 4) & 0xF, 16))).append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
             }
-            outputStream.close();
-            inputStream.close();
-            // Debug.info("File downloaded from " + fileURL);
-        } else {
-            httpConn.disconnect();
-            throw new IOException("No file to download. Server replied with HTTP code: " + responseCode);
         }
-        httpConn.disconnect();
+        return URI.create(ret.toString());
+    }
+
+    private static InputStream decode(final HttpResponse<InputStream> response) throws IOException {
+        final String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        final InputStream body = response.body();
+        if (!encoding.equalsIgnoreCase("gzip")) {
+            return body;
+        }
+        try {
+            return new GZIPInputStream(body);
+        } catch (IOException e) {
+            //a bad gzip header, the connection is released by closing the body
+            body.close();
+            throw new NotRetriedException(e);
+        }
+    }
+
+    private static void acquire() throws IOException {
+        try {
+            IN_FLIGHT.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+    }
+
+    //250ms, 500ms, 1s ... with up to 50% jitter so retries from parallel loads do not line up
+    private static void backoff(final int attempt) throws IOException {
+        final long delay = INITIAL_BACKOFF_MS << (attempt - 1);
+        try {
+            Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    public interface BodyHandler<T> {
+        T handle(InputStream body) throws IOException;
+    }
+
+    private interface ResponseHandler<T> {
+        T handle(HttpResponse<InputStream> response, InputStream body) throws IOException;
+    }
+
+    //carries an exception that is not worth retrying (a bad body or a failing handler) past the retry loop
+    private static class NotRetriedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private NotRetriedException(final IOException cause) {
+            super(cause);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,138 @@
+package com.artificial;
+
+/**
+ * LU factorization with partial (row) pivoting, PA = LU.
+ * Factorize once, then reuse for determinant, inverse and any number of solves.
+ */
+public class LUDecomposition {
+    private final int size;
+    private final double[][] lu;
+    private final int[] pivots;
+    private final boolean singular;
+    private int pivotSign = 1;
+
+    public LUDecomposition(final Matrix m) {
+        if (m.getRows() != m.getColumns()) {
+            throw new IllegalArgumentException("Required square matrix, found " + m.getRows() + "x" + m.getColumns());
+        }
+        this.size = m.getRows();
+        this.lu = m.getData();
+        this.pivots = new int[size];
+        for (int row = 0; row < size; row++) {
+            pivots[row] = row;
+        }
+        boolean singular = false;
+        for (int k = 0; k < size; k++) {
+            int p = k;
+            double max = Math.abs(lu[k][k]);
+            for (int row = k + 1; row < size; row++) {
+                final double v = Math.abs(lu[row][k]);
+                if (v > max) {
+                    max = v;
+                    p = row;
+                }
+            }
+            if (p != k) {
+                final double[] tmp = lu[p];
+                lu[p] = lu[k];
+                lu[k] = tmp;
+                final int t = pivots[p];
+                pivots[p] = pivots[k];
+                pivots[k] = t;
+                pivotSign = -pivotSign;
+            }
+            final double[] pivotRow = lu[k];
+            final double pivot = pivotRow[k];
+            if (pivot == 0) {
+                singular = true;
+                continue;
+            }
+            for (int row = k + 1; row < size; row++) {
+                final double[] r = lu[row];
+                final double factor = (r[k] /= pivot);
+                if (factor == 0) continue;
+                for (int col = k + 1; col < size; col++) {
+                    r[col] -= factor * pivotRow[col];
+                }
+            }
+        }
+        this.singular = singular;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isSingular() {
+        return singular;
+    }
+
+    public double determinant() {
+        double d = pivotSign;
+        for (int i = 0; i < size; i++) {
+            d *= lu[i][i];
+        }
+        return d;
+    }
+
+    /**
+     * Solves A * X = rhs, rhs may have any number of columns
+     */
+    public Matrix solve(final Matrix rhs) {
+        if (rhs.getRows() != size) {
+            throw new IllegalArgumentException("Required " + size + " rows, found " + rhs.getRows());
+        }
+        if (singular) {
+            throw new ArithmeticException("Matrix is singular");
+        }
+        final int cols = rhs.getColumns();
+        final double[][] x = new double[size][];
+        for (int row = 0; row < size; row++) {
+            x[row] = rhs.copyRow(pivots[row]);
+        }
+        substitute(x, cols);
+        return new Matrix(x);
+    }
+
+    public Matrix inverse() {
+        if (singular) {
+            throw new ArithmeticException("Matrix is singular");
+        }
+        final double[][] x = new double[size][size];
+        for (int row = 0; row < size; row++) {
+            x[row][pivots[row]] = 1;
+        }
+        substitute(x, size);
+        return new Matrix(x);
+    }
+
+    //forward substitution with unit-diagonal L, then back substitution with U, row-oriented
+    private void substitute(final double[][] x, final int cols) {
+        for (int k = 0; k < size; k++) {
+            final double[] xk = x[k];
+            for (int row = k + 1; row < size; row++) {
+                final double factor = lu[row][k];
+                if (factor == 0) continue;
+                final double[] xr = x[row];
+                for (int col = 0; col < cols; col++) {
+                    xr[col] -= factor * xk[col];
+                }
+            }
+        }
+        for (int k = size - 1; k >= 0; k--) {
+            final double[] xk = x[k];
+            final double pivot = lu[k][k];
+            for (int col = 0; col < cols; col++) {
+                xk[col] /= pivot;
+            }
+            for (int row = 0; row < k; row++) {
+                final double factor = lu[row][k];
+                if (factor == 0) continue;
+                final double[] xr = x[row];
+                for (int col = 0; col < cols; col++) {
+                    xr[col] -= factor * xk[col];
+                }
+            }
+        }
+    }
+}
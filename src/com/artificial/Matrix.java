@@ -1,86 +1,107 @@
 package com.artificial;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Dense matrix backed by a flat double[] addressed through row and column strides.
+ * Row, column and transposed views share the backing array with the matrix they were taken from.
+ */
 public class Matrix {
+    //multiply-adds below which the product is computed on the calling thread
+    private static final long PARALLEL_MULTIPLY_THRESHOLD = 1L << 21;
+    //tile edge for the blocked product, 64x64 doubles = 32KB per tile
+    private static final int BLOCK_SIZE = 64;
     private final int columns, rows;
-    private final double[][] data;
+    private final double[] data;
+    private final int offset, rowStride, columnStride;
+    //shared with views, bumped on every write so a cached decomposition can tell it is stale
+    private final int[] modifications;
+    private LUDecomposition decomposition;
+    private int decompositionStamp;
 
     public Matrix(int rows, int columns) {
-        this(new double[rows][columns]);
+        this(rows, columns, new double[rows * columns]);
     }
 
+    /**
+     * Single row matrix backed by data
+     */
     public Matrix(final double[] data) {
-        this(new double[][]{data});
+        this(1, data.length, data);
     }
 
     public Matrix(final double[][] data) {
+        this(data.length, data[0].length);
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(data[row], 0, this.data, row * columns, columns);
+        }
+    }
+
+    /**
+     * Matrix backed by data in row-major order
+     */
+    public Matrix(final int rows, final int columns, final double[] data) {
+        this(data, rows, columns, 0, columns, 1, new int[1]);
+        if (data.length < rows * columns) {
+            throw new IllegalArgumentException("Required " + rows * columns + " elements, found " + data.length);
+        }
+    }
+
+    private Matrix(final double[] data, final int rows, final int columns, final int offset, final int rowStride, final int columnStride, final int[] modifications) {
         this.data = data;
-        this.rows = data.length;
-        this.columns = data[0].length;
+        this.rows = rows;
+        this.columns = columns;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.columnStride = columnStride;
+        this.modifications = modifications;
     }
 
     /**
      * Returns a matrix with all of the elements equalling to value
      */
     public static Matrix unitMatrix(final int rows, final int columns, final double value) {
-        final double[][] data = new double[rows][columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                data[i][j] = value;
-            }
-        }
-        return new Matrix(data);
+        final double[] data = new double[rows * columns];
+        Arrays.fill(data, value);
+        return new Matrix(rows, columns, data);
     }
 
-    private static Matrix subMatrix(Matrix curr, int row, int col) {
-        final Matrix ret = new Matrix(curr.getRows() - 1, curr.getColumns() - 1);
-        int row_index = 0, col_index = 0;
-        for (int row_ = 0; row_ < curr.getRows(); row_++) {
-            if (row_ == row) continue;
-            for (int col_ = 0; col_ < curr.getColumns(); col_++) {
-                if (col_ == col) continue;
-                ret.put(curr.get(row_, col_), row_index, col_index);
-                col_index++;
-            }
-            row_index++;
-            col_index = 0;
+    /**
+     * LU factorization of this matrix, computed once and reused until the matrix is modified
+     */
+    public LUDecomposition decompose() {
+        if (decomposition == null || decompositionStamp != modifications[0]) {
+            decomposition = new LUDecomposition(this);
+            decompositionStamp = modifications[0];
         }
-        return ret;
+        return decomposition;
     }
 
-    private static double determinant_3x3(final Matrix m) {
-        if (m.getRows() != 3 || m.getColumns() != 3) {
-            throw new IllegalArgumentException("Required matrix of size 3x3, found " + m.getRows() + "x" + m.getColumns());
+    public Matrix inverse() {
+        if (getRows() != getColumns()) {
+            return null;
         }
-        return m.get(0, 0) * m.get(1, 1) * m.get(2, 2)
-                + m.get(0, 1) * m.get(1, 2) * m.get(2, 0)
-                + m.get(0, 2) * m.get(1, 0) * m.get(2, 1)
-                - m.get(0, 0) * m.get(1, 2) * m.get(2, 1)
-                - m.get(0, 1) * m.get(1, 0) * m.get(2, 2)
-                - m.get(0, 2) * m.get(1, 1) * m.get(2, 0);
+        return decompose().inverse();
     }
 
-    public Matrix inverse() {
-        final double d = this.determinant();
-        return this.cofactorMatrix().transpose().multiply(1 / d);
+    /**
+     * Solves this * X = rhs for X
+     */
+    public Matrix solve(final Matrix rhs) {
+        if (getRows() != getColumns() || getRows() != rhs.getRows()) {
+            return null;
+        }
+        return decompose().solve(rhs);
     }
 
     public Matrix cofactorMatrix() {
-        final int size;
-        if ((size = getRows()) != getColumns()) {
+        if (getRows() != getColumns()) {
             return null;
         }
-        final double[][] ret = new double[size][size];
-        for (int row = 0; row < size; row++) {
-            for (int col = 0; col < size; col++) {
-                //2.0 + row + col = (row + 1.0) + (col + 1.0)
-                //1x1 matrix
-                final Matrix sub = size == 1 ? this : subMatrix(this, row, col);
-                ret[row][col] = Math.pow(-1.0, 2.0 + row + col) * recursiveDeterminant(sub);
-            }
-        }
-        return new Matrix(ret);
+        //adj(A) = det(A) * inverse(A), cofactor matrix = adj(A) transposed
+        return inverse().transpose().multiply(determinant());
     }
 
     public double determinant() {
@@ -88,57 +109,34 @@ public class Matrix {
         if ((size = getRows()) != getColumns()) {
             return Double.NaN;
         }
-        if (getRows() == 1) {
+        if (size == 1) {
             return get(0, 0);
         } else if (size == 2) {
             return get(0, 0) * get(1, 1) - get(0, 1) * get(1, 0);
-        } else if (size == 3) {
-            return determinant_3x3(this);
         }
-        return recursiveDeterminant(this);
-    }
-
-    private double recursiveDeterminant(Matrix curr) {
-        if (curr.getRows() == 1) {
-            return curr.get(0, 0);
-        } else if (curr.getRows() == 2) {
-            return get(0, 0) * get(1, 1) - get(0, 1) * get(1, 0);
-        } else if (curr.getRows() == 3) {
-            return determinant_3x3(curr);
-        }
-        double d = 0;
-        for (int col = 0; col < curr.getColumns(); col++) {
-            final double sign = Math.pow(-1.0, 2.0 + col);
-            d += sign * curr.get(0, col) * recursiveDeterminant(subMatrix(curr, 0, col));
-        }
-        return d;
+        return decompose().determinant();
     }
 
     /**
-     * Switch rows and columns
+     * Switch rows and columns, the returned matrix is a view sharing this matrix's data
      */
     public Matrix transpose() {
-        final double[][] ret = new double[columns][rows];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                ret[j][i] = data[i][j];
-            }
-        }
-        return new Matrix(ret);
+        return new Matrix(data, columns, rows, offset, columnStride, rowStride, modifications);
     }
 
     public void put(final double obj, int row, int column) {
-        if (row > getRows() || column > getColumns()) {
+        if (row < 0 || row >= getRows() || column < 0 || column >= getColumns()) {
             return;
         }
-        data[row][column] = obj;
+        data[index(row, column)] = obj;
+        modifications[0]++;
     }
 
     public double get(final int row, final int column) {
-        if (row > getRows() || column > getColumns()) {
+        if (row < 0 || row >= getRows() || column < 0 || column >= getColumns()) {
             throw new IllegalArgumentException();
         }
-        return data[row][column];
+        return data[index(row, column)];
     }
 
     public int getColumns() {
@@ -149,61 +147,60 @@ public class Matrix {
         return rows;
     }
 
+    /**
+     * Single row view sharing this matrix's data
+     */
     public Matrix getRow(final int row) {
         if (row < 0 || row >= this.getRows()) {
             throw new IllegalArgumentException();
         }
-        return new Matrix(data[row]);
+        return new Matrix(data, 1, columns, offset + row * rowStride, rowStride, columnStride, modifications);
+    }
+
+    /**
+     * Single column view sharing this matrix's data
+     */
+    public Matrix getColumn(final int column) {
+        if (column < 0 || column >= this.getColumns()) {
+            throw new IllegalArgumentException();
+        }
+        return new Matrix(data, rows, 1, offset + column * columnStride, rowStride, columnStride, modifications);
     }
 
     public Matrix add(final Matrix m) {
-        final int rows, cols;
-        if ((rows = this.getRows()) != m.getRows() || (cols = this.getColumns()) != m.getColumns()) {
+        if (this.getRows() != m.getRows() || this.getColumns() != m.getColumns()) {
             return null;
         }
-        final double[][] ret = new double[rows][cols];
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                ret[row][col] = this.get(row, col) + m.get(row, col);
-            }
+        final double[] a = this.toFlatArray(), b = m.isContiguous() ? m.data : m.toFlatArray();
+        final int bOffset = m.isContiguous() ? m.offset : 0;
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[bOffset + i];
         }
-        return new Matrix(ret);
+        return new Matrix(rows, columns, a);
     }
 
     public Matrix add(final double val) {
-        final int rows = this.getRows(), cols = this.getColumns();
-        final double[][] ret = new double[rows][cols];
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                ret[row][col] = this.get(row, col) + val;
-            }
+        final double[] ret = toFlatArray();
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] += val;
         }
-        return new Matrix(ret);
+        return new Matrix(rows, columns, ret);
     }
 
     public Matrix subtract(final Matrix m) {
-        final int rows, cols;
-        if ((rows = this.getRows()) != m.getRows() || (cols = this.getColumns()) != m.getColumns()) {
+        if (this.getRows() != m.getRows() || this.getColumns() != m.getColumns()) {
             return null;
         }
-        final double[][] ret = new double[rows][cols];
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                ret[row][col] = this.get(row, col) - m.get(row, col);
-            }
+        final double[] a = this.toFlatArray(), b = m.isContiguous() ? m.data : m.toFlatArray();
+        final int bOffset = m.isContiguous() ? m.offset : 0;
+        for (int i = 0; i < a.length; i++) {
+            a[i] -= b[bOffset + i];
         }
-        return new Matrix(ret);
+        return new Matrix(rows, columns, a);
     }
 
     public Matrix subtract(final double val) {
-        final int rows = this.getRows(), cols = this.getColumns();
-        final double[][] ret = new double[rows][cols];
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                ret[row][col] = this.get(row, col) - val;
-            }
-        }
-        return new Matrix(ret);
+        return add(-val);
     }
 
     public Matrix power(final int power) {
@@ -219,39 +216,200 @@ public class Matrix {
         if (this.getColumns() != m.getRows()) {
             return null;
         }
-        final double[][] ret = new double[this.getRows()][m.getColumns()];
-        for (int r1 = 0; r1 < this.getRows(); r1++) {
-            for (int c = 0; c < m.getColumns(); c++) {
-                double total = 0;
-                for (int r2 = 0; r2 < m.getRows(); r2++) {
-                    total += m.get(r2, c) * this.get(r1, r2);
-                }
-                ret[r1][c] = total;
-            }
+        return multiplyInto(m, new Matrix(this.getRows(), m.getColumns()));
+    }
+
+    /**
+     * Writes this * m into dest and returns dest, dest must not share data with either operand
+     */
+    public Matrix multiplyInto(final Matrix m, final Matrix dest) {
+        if (this.getColumns() != m.getRows() || dest.getRows() != this.getRows() || dest.getColumns() != m.getColumns()) {
+            return null;
+        }
+        final int n = this.getRows(), inner = this.getColumns(), p = m.getColumns();
+        final double[] a = this.isContiguous() && offset == 0 ? this.data : this.toFlatArray();
+        final double[] b = m.isContiguous() && m.offset == 0 ? m.data : m.toFlatArray();
+        final boolean direct = dest.isContiguous() && dest.offset == 0;
+        final double[] ret = direct ? dest.data : new double[n * p];
+        if (direct) {
+            Arrays.fill(ret, 0, n * p, 0);
+        }
+        final MultiplyTask task = new MultiplyTask(a, b, ret, inner, p, 0, n, 0, p);
+        if ((long) n * inner * p >= PARALLEL_MULTIPLY_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
         }
-        return new Matrix(ret);
+        if (!direct) {
+            dest.set(new Matrix(n, p, ret));
+        }
+        dest.modifications[0]++;
+        return dest;
     }
 
     public Matrix multiply(final double value) {
-        final int rows, cols;
-        final double[][] ret = new double[rows = this.getRows()][cols = this.getColumns()];
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                ret[row][col] = this.get(row, col) * value;
-            }
+        final double[] ret = toFlatArray();
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] *= value;
         }
-        return new Matrix(ret);
+        return new Matrix(rows, columns, ret);
     }
 
     public Matrix divide(final double value) {
-        final int rows, cols;
-        final double[][] ret = new double[rows = this.getRows()][cols = this.getColumns()];
+        final double[] ret = toFlatArray();
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] /= value;
+        }
+        return new Matrix(rows, columns, ret);
+    }
+
+    /**
+     * Copies the elements of m into this matrix and returns this
+     */
+    public Matrix set(final Matrix m) {
+        if (this.getRows() != m.getRows() || this.getColumns() != m.getColumns()) {
+            return null;
+        }
         for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < cols; col++) {
-                ret[row][col] = this.get(row, col) / value;
+            final int start = offset + row * rowStride;
+            if (columnStride == 1) {
+                m.copyRow(row, data, start);
+            } else {
+                for (int col = 0, i = start; col < columns; col++, i += columnStride) {
+                    data[i] = m.data[m.index(row, col)];
+                }
             }
         }
-        return new Matrix(ret);
+        modifications[0]++;
+        return this;
+    }
+
+    public Matrix addInPlace(final Matrix m) {
+        if (this.getRows() != m.getRows() || this.getColumns() != m.getColumns()) {
+            return null;
+        }
+        if (this.isContiguous() && m.isContiguous()) {
+            final int length = rows * columns;
+            for (int i = 0; i < length; i++) {
+                data[offset + i] += m.data[m.offset + i];
+            }
+        } else {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    data[index(row, col)] += m.data[m.index(row, col)];
+                }
+            }
+        }
+        modifications[0]++;
+        return this;
+    }
+
+    public Matrix addInPlace(final double val) {
+        if (isContiguous()) {
+            final int end = offset + rows * columns;
+            for (int i = offset; i < end; i++) {
+                data[i] += val;
+            }
+        } else {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    data[index(row, col)] += val;
+                }
+            }
+        }
+        modifications[0]++;
+        return this;
+    }
+
+    public Matrix subtractInPlace(final Matrix m) {
+        if (this.getRows() != m.getRows() || this.getColumns() != m.getColumns()) {
+            return null;
+        }
+        if (this.isContiguous() && m.isContiguous()) {
+            final int length = rows * columns;
+            for (int i = 0; i < length; i++) {
+                data[offset + i] -= m.data[m.offset + i];
+            }
+        } else {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    data[index(row, col)] -= m.data[m.index(row, col)];
+                }
+            }
+        }
+        modifications[0]++;
+        return this;
+    }
+
+    public Matrix subtractInPlace(final double val) {
+        return addInPlace(-val);
+    }
+
+    public Matrix scaleInPlace(final double value) {
+        if (isContiguous()) {
+            final int end = offset + rows * columns;
+            for (int i = offset; i < end; i++) {
+                data[i] *= value;
+            }
+        } else {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    data[index(row, col)] *= value;
+                }
+            }
+        }
+        modifications[0]++;
+        return this;
+    }
+
+    public Matrix divideInPlace(final double value) {
+        return scaleInPlace(1 / value);
+    }
+
+    /**
+     * Element by element product, this[i][j] *= m[i][j], returns this
+     */
+    public Matrix multiplyElementsInPlace(final Matrix m) {
+        if (this.getRows() != m.getRows() || this.getColumns() != m.getColumns()) {
+            return null;
+        }
+        if (this.isContiguous() && m.isContiguous()) {
+            final int length = rows * columns;
+            for (int i = 0; i < length; i++) {
+                data[offset + i] *= m.data[m.offset + i];
+            }
+        } else {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    data[index(row, col)] *= m.data[m.index(row, col)];
+                }
+            }
+        }
+        modifications[0]++;
+        return this;
+    }
+
+    /**
+     * this += m * value, returns this
+     */
+    public Matrix addScaledInPlace(final Matrix m, final double value) {
+        if (this.getRows() != m.getRows() || this.getColumns() != m.getColumns()) {
+            return null;
+        }
+        if (this.isContiguous() && m.isContiguous()) {
+            final int length = rows * columns;
+            for (int i = 0; i < length; i++) {
+                data[offset + i] += m.data[m.offset + i] * value;
+            }
+        } else {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    data[index(row, col)] += m.data[m.index(row, col)] * value;
+                }
+            }
+        }
+        modifications[0]++;
+        return this;
     }
 
     public Matrix replaceRow(final int row, final double[] values) {
@@ -259,9 +417,7 @@ public class Matrix {
             return null;
         }
         final Matrix ret = this.duplicate();
-        for (int col = 0; col < values.length; col++) {
-            ret.put(values[col], row, col);
-        }
+        System.arraycopy(values, 0, ret.data, row * columns, columns);
         return ret;
     }
 
@@ -270,33 +426,135 @@ public class Matrix {
             return null;
         }
         final Matrix ret = this.duplicate();
-        for (int row = 0; row < values.length; row++) {
-            ret.put(values[row], row, col);
+        for (int row = 0, i = col; row < values.length; row++, i += columns) {
+            ret.data[i] = values[row];
         }
         return ret;
     }
 
+    /**
+     * Contiguous copy, independent of this matrix's data
+     */
     public Matrix duplicate() {
-        final double[][] ret = new double[this.getRows()][this.getColumns()];
-        final double[][] curr = getData();
-        for (int row = 0; row < this.getRows(); row++) {
-            for (int cols = 0; cols < this.getColumns(); cols++) {
-                ret[row][cols] = curr[row][cols];
-            }
-        }
-        return new Matrix(ret);
+        return new Matrix(rows, columns, toFlatArray());
     }
 
+    /**
+     * Returns a copy of the elements as a two dimensional array
+     */
     public double[][] getData() {
-        return data;
+        final double[][] ret = new double[rows][];
+        for (int row = 0; row < rows; row++) {
+            ret[row] = copyRow(row);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a copy of the elements in row-major order
+     */
+    public double[] toFlatArray() {
+        if (isContiguous()) {
+            return Arrays.copyOfRange(data, offset, offset + rows * columns);
+        }
+        final double[] ret = new double[rows * columns];
+        for (int row = 0; row < rows; row++) {
+            copyRow(row, ret, row * columns);
+        }
+        return ret;
+    }
+
+    double[] copyRow(final int row) {
+        final double[] ret = new double[columns];
+        copyRow(row, ret, 0);
+        return ret;
+    }
+
+    private void copyRow(final int row, final double[] dest, final int destOffset) {
+        final int start = offset + row * rowStride;
+        if (columnStride == 1) {
+            System.arraycopy(data, start, dest, destOffset, columns);
+            return;
+        }
+        for (int col = 0, i = start; col < columns; col++, i += columnStride) {
+            dest[destOffset + col] = data[i];
+        }
+    }
+
+    private boolean isContiguous() {
+        return columnStride == 1 && (rowStride == columns || rows == 1);
+    }
+
+    private int index(final int row, final int column) {
+        return offset + row * rowStride + column * columnStride;
     }
 
     @Override
     public String toString() {
         final StringBuilder builder = new StringBuilder();
-        for (final double[] arr : data) {
-            builder.append(Arrays.toString(arr)).append(System.lineSeparator());
+        for (int row = 0; row < rows; row++) {
+            builder.append(Arrays.toString(copyRow(row))).append(System.lineSeparator());
         }
         return builder.toString();
     }
+
+    /**
+     * Blocked C += A * B over a row and column range of C, all arrays contiguous row-major.
+     * Splits the larger range in half until it falls under one tile per side or the work is too small to fork.
+     */
+    private static class MultiplyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final double[] a, b, c;
+        private final int inner, columns;
+        private final int rowStart, rowEnd, colStart, colEnd;
+
+        private MultiplyTask(double[] a, double[] b, double[] c, int inner, int columns, int rowStart, int rowEnd, int colStart, int colEnd) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.inner = inner;
+            this.columns = columns;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+        }
+
+        @Override
+        protected void compute() {
+            final int rows = rowEnd - rowStart, cols = colEnd - colStart;
+            if ((long) rows * cols * inner >= PARALLEL_MULTIPLY_THRESHOLD && (rows > BLOCK_SIZE || cols > BLOCK_SIZE)) {
+                if (rows >= cols) {
+                    final int mid = rowStart + rows / 2;
+                    invokeAll(new MultiplyTask(a, b, c, inner, columns, rowStart, mid, colStart, colEnd),
+                            new MultiplyTask(a, b, c, inner, columns, mid, rowEnd, colStart, colEnd));
+                } else {
+                    final int mid = colStart + cols / 2;
+                    invokeAll(new MultiplyTask(a, b, c, inner, columns, rowStart, rowEnd, colStart, mid),
+                            new MultiplyTask(a, b, c, inner, columns, rowStart, rowEnd, mid, colEnd));
+                }
+                return;
+            }
+            for (int i0 = rowStart; i0 < rowEnd; i0 += BLOCK_SIZE) {
+                final int iMax = Math.min(i0 + BLOCK_SIZE, rowEnd);
+                for (int k0 = 0; k0 < inner; k0 += BLOCK_SIZE) {
+                    final int kMax = Math.min(k0 + BLOCK_SIZE, inner);
+                    for (int j0 = colStart; j0 < colEnd; j0 += BLOCK_SIZE) {
+                        final int jMax = Math.min(j0 + BLOCK_SIZE, colEnd);
+                        for (int i = i0; i < iMax; i++) {
+                            final int aRow = i * inner, cRow = i * columns;
+                            for (int k = k0; k < kMax; k++) {
+                                final double v = a[aRow + k];
+                                if (v == 0) continue;
+                                final int bRow = k * columns;
+                                for (int j = j0; j < jMax; j++) {
+                                    c[cRow + j] += v * b[bRow + j];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
 }
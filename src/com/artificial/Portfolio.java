@@ -117,21 +117,11 @@ public class Portfolio {
         final Set<Stock> set;
         final Stock[] stocks = (set = stockWeightMap.keySet()).toArray(new Stock[set.size()]);
         final double[] weightsLinear = new double[stocks.length];
-        final double[][] covariances = new double[stocks.length][];
-        final double[][] weightsVertical = new double[stocks.length][1];
         for (int i = 0; i < stocks.length; i++) {
-            final Stock s1 = stocks[i];
-            weightsLinear[i] = stockWeightMap.get(s1);
-            weightsVertical[i][0] = weightsLinear[i];
-            final double[] iCov = new double[stocks.length];
-            for (int j = 0; j < stocks.length; j++) {
-                final Stock s2 = stocks[j];
-                iCov[j] = Statistics.covariance(s1.getHistory(years).getMonthlyEarnings(), s2.getHistory(years).getMonthlyEarnings());
-            }
-            covariances[i] = iCov;
+            weightsLinear[i] = stockWeightMap.get(stocks[i]);
         }
-        final Matrix m1 = new Matrix(weightsLinear), m2 = new Matrix(covariances), m3 = new Matrix(weightsVertical);
-        return m1.multiply(m2).multiply(m3).get(0, 0);
+        final Matrix m1 = new Matrix(weightsLinear), m2 = covarianceEstimate(years).getCovariance().toMatrix();
+        return m1.multiply(m2).multiply(m1.transpose()).get(0, 0);
     }
 
     /*portfolio risk*/
@@ -144,81 +134,72 @@ public class Portfolio {
         return Math.sqrt(getVariance(years));
     }
 
+    /**
+     * Rank of the covariance matrix the optimizations solve with, below the number of assets if some returns are
+     * linear combinations of the others, e.g. with as many assets as monthly returns to estimate it from
+     */
+    public int getCovarianceRank() {
+        return covarianceEstimate(Asset.DEFAULT_YEARS).getCovariance().cholesky().getRank();
+    }
+
     //Elton, Gruber; Modern portfolio theory and investment analysis (1991)
     public void optimizationOptimalRiskyPortfolio(final RiskFreeAsset riskFree, final Plot2DPanel plot) {
-        final int size;
-        final Stock[] stocks = stockWeightMap.keySet().toArray(new Stock[(size = stockWeightMap.keySet().size())]);
-        final double[] returns = new double[size];
-        final double rf = riskFree.getAnnualReturn();
-        final Matrix cov = new Matrix(covarianceMatrix()).multiply(new Matrix(correlationMatrix()));
-        for (int i = 0; i < size; i++) {
-            returns[i] = (stocks[i].getAnnualReturn() - rf);
-        }
-        final double[] determinants = new double[size];
-        for (int i = 0; i < size; i++) {
-            determinants[i] = cov.replaceColumn(i, returns).determinant();
-        }
-        double total_det = 0;
-        for (final double d : determinants) {
-            total_det += d;
-        }
-        for (int i = 0; i < size; i++) {
-            stockWeightMap.put(stocks[i], (determinants[i] / total_det));
-        }
+        final CovarianceEstimate estimate = covarianceEstimate(Asset.DEFAULT_YEARS);
+        final Matrix cov = estimate.getCovariance().multiply(estimate.getCorrelation().toMatrix());
+        optimizationOptimalRiskyPortfolio(riskFree, cov);
         //drawRiskFreeAsset(plot, this, riskFree);
     }
 
     private void optimizationOptimalRiskyPortfolio(final RiskFreeAsset riskFree, final Matrix cov) {
         final int size;
         final Stock[] stocks = stockWeightMap.keySet().toArray(new Stock[(size = stockWeightMap.keySet().size())]);
-        final double[] returns = new double[size];
+        final double[][] returns = new double[size][1];
         final double rf = riskFree.getAnnualReturn();
         for (int i = 0; i < size; i++) {
-            returns[i] = (stocks[i].getAnnualReturn() - rf);
+            returns[i][0] = (stocks[i].getAnnualReturn() - rf);
         }
-        final double[] determinants = new double[size];
+        //Cov * z = (R - Rf), weights are z normalized to sum to 1
+        //(same result as Cramer's rule, since det(Cov with column i replaced) = det(Cov) * z_i)
+        final Matrix z = cov.solve(new Matrix(returns));
+        double total = 0;
         for (int i = 0; i < size; i++) {
-            determinants[i] = cov.replaceColumn(i, returns).determinant();
-        }
-        double total_det = 0;
-        for (final double d : determinants) {
-            total_det += d;
+            total += z.get(i, 0);
         }
         for (int i = 0; i < size; i++) {
-            stockWeightMap.put(stocks[i], (determinants[i] / total_det));
+            stockWeightMap.put(stocks[i], (z.get(i, 0) / total));
         }
     }
 
     //Based on http://www.calculatinginvestor.com/2011/06/07/efficient-frontier-1/
     public void efficientFrontier(final Plot2DPanel plot) {
         final long start = System.currentTimeMillis();
-        final Matrix cov = new Matrix(covarianceMatrix());
-        final Matrix covInverse = cov.inverse();
+        final SymmetricMatrix cov = covarianceEstimate(Asset.DEFAULT_YEARS).getCovariance();
         final Matrix returnsMatrix = new Matrix(expectedReturnsMatrix());
         final Matrix unityMatrix = Matrix.unitMatrix(returnsMatrix.getRows(), returnsMatrix.getColumns(), 1);
-        final Matrix A = unityMatrix.transpose().multiply(covInverse).multiply(unityMatrix);
-        final Matrix B = unityMatrix.transpose().multiply(covInverse).multiply(returnsMatrix);
-        final Matrix C = returnsMatrix.transpose().multiply(covInverse).multiply(returnsMatrix);
-        final Matrix D = A.multiply(C).subtract(B.power(2));
+        //one Cholesky solve for both right-hand sides instead of inverting the covariance matrix
+        final Matrix rhs = new Matrix(returnsMatrix.getRows(), 2);
+        rhs.getColumn(0).set(unityMatrix);
+        rhs.getColumn(1).set(returnsMatrix);
+        final Matrix solved = cov.solve(rhs);
+        final Matrix scalar = new Matrix(1, 1);
+        final double A = unityMatrix.transpose().multiplyInto(solved.getColumn(0), scalar).get(0, 0);
+        final double B = unityMatrix.transpose().multiplyInto(solved.getColumn(1), scalar).get(0, 0);
+        final double C = returnsMatrix.transpose().multiplyInto(solved.getColumn(1), scalar).get(0, 0);
+        final double D = A * C - B * B;
         final int size = 700;
-        final double[][] arr = new double[1][size];
+        final double[] portfolioReturns = new double[size];
         int currVal = -(size / 2);
         for (int i = 0; i < size; i++) {
-            arr[0][i] = (currVal++ + 1d) / 10d;
+            portfolioReturns[i] = (currVal++ + 1d) / 10d;
         }
-        final Matrix mu = new Matrix(arr);
-        final double[][] arr2 = new double[1][size];
-        for (int i = 0; i < arr[0].length; i++) {
-            arr2[0][i] = arr[0][i] * arr[0][i];
-        }
-        final Matrix muPower = new Matrix(arr2);
-        final Matrix minVar = ((A.multiply(muPower)).add(B.multiply(-2).multiply(mu).add(C.get(0, 0)))).divide(D.get(0, 0));
+        final Matrix mu = new Matrix(portfolioReturns);
+        //(A * mu^2 - 2B * mu + C) / D, evaluated as (mu * (A * mu - 2B) + C) / D in a single buffer
+        final Matrix minVar = new Matrix(1, size).set(mu).scaleInPlace(A).addInPlace(-2 * B).multiplyElementsInPlace(mu).addInPlace(C).divideInPlace(D);
         final double[] minStd = new double[minVar.getColumns()];
         for (int i = 0; i < minVar.getColumns(); i++) {
             minStd[i] = Math.sqrt(Math.min(Integer.MAX_VALUE, minVar.get(0, i)));
             Debug.info(minStd[i]);
         }
-        final double[] portfolioReturns = arr[0];
         Debug.info("Optimized in " + (System.currentTimeMillis() - start) + "ms");
 
         plot.addLinePlot("Frontier", Color.GREEN, minStd, portfolioReturns);
@@ -232,30 +213,8 @@ public class Portfolio {
         plot.addScatterPlot("Individual", Color.RED, stockStd, stockReturn);
     }
 
-    private double[][] covarianceMatrix() {
-        final Stock[] stocks = stockWeightMap.keySet().toArray(new Stock[stockWeightMap.size()]);
-        final double[][] ret = new double[stocks.length][stocks.length];
-        for (int i = 0; i < stocks.length; i++) {
-            final Stock s1 = stocks[i];
-            for (int j = 0; j < stocks.length; j++) {
-                final Stock s2 = stocks[j];
-                ret[i][j] = Statistics.covariance(s1.getHistory().getMonthlyEarnings(), s2.getHistory().getMonthlyEarnings());
-            }
-        }
-        return ret;
-    }
-
-    private double[][] correlationMatrix() {
-        final Stock[] stocks = stockWeightMap.keySet().toArray(new Stock[stockWeightMap.size()]);
-        final double[][] ret = new double[stocks.length][stocks.length];
-        for (int i = 0; i < stocks.length; i++) {
-            final Stock s1 = stocks[i];
-            for (int j = 0; j < stocks.length; j++) {
-                final Stock s2 = stocks[j];
-                ret[i][j] = LinearRegression.Simple.correlationCoefficient(s1.getHistory().getMonthlyEarnings(), s2.getHistory().getMonthlyEarnings());
-            }
-        }
-        return ret;
+    private CovarianceEstimate covarianceEstimate(final int years) {
+        return CovarianceEstimate.of(stockWeightMap.keySet(), years);
     }
 
     private double[][] expectedReturnsMatrix() {
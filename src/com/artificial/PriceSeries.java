@@ -0,0 +1,257 @@
+package com.artificial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Price history held column by column in primitive arrays, index 0 is the newest row (same order as the Yahoo CSV).
+ */
+public class PriceSeries {
+    public static final String FILE_EXTENSION = ".bin";
+    //binary layout, little endian: magic, version, row count, then one column after another
+    //int dates, double open, high, low, close, adjClose, long volume
+    private static final int MAGIC = 0x50534331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private final int offset, size;
+    private final int[] dates;
+    private final double[] open, high, low, close, adjustedClose;
+    private final long[] volume;
+
+    private PriceSeries(int size, int[] dates, double[] open, double[] high, double[] low, double[] close, long[] volume, double[] adjustedClose) {
+        this(0, size, dates, open, high, low, close, volume, adjustedClose);
+    }
+
+    private PriceSeries(int offset, int size, int[] dates, double[] open, double[] high, double[] low, double[] close, long[] volume, double[] adjustedClose) {
+        this.offset = offset;
+        this.size = size;
+        this.dates = dates;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.adjustedClose = adjustedClose;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Date of row index as days since 1970-01-01
+     */
+    public int getEpochDay(final int index) {
+        return dates[offset + index];
+    }
+
+    public Date getDate(final int index) {
+        return Date.ofEpochDay(dates[offset + index]);
+    }
+
+    public double getOpen(final int index) {
+        return open[offset + index];
+    }
+
+    public double getHigh(final int index) {
+        return high[offset + index];
+    }
+
+    public double getLow(final int index) {
+        return low[offset + index];
+    }
+
+    public double getClose(final int index) {
+        return close[offset + index];
+    }
+
+    public long getVolume(final int index) {
+        return volume[offset + index];
+    }
+
+    public double getAdjustedClose(final int index) {
+        return adjustedClose[offset + index];
+    }
+
+    /**
+     * Percent change of the adjusted close between consecutive rows, the oldest row has no predecessor and is not included
+     */
+    @NumberData(type = NumberType.PERCENT)
+    public double[] getReturns() {
+        final double[] adj = adjustedClose;
+        final double[] earnings = new double[Math.max(0, size - 1)];
+        for (int i = 0, j = offset; i < earnings.length; i++, j++) {
+            earnings[i] = (adj[j] / adj[j + 1] - 1) * 100;
+        }
+        return earnings;
+    }
+
+    /**
+     * Rows [from, to) as a view sharing this series' arrays
+     */
+    public PriceSeries slice(final int from, final int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + size);
+        }
+        return new PriceSeries(offset + from, to - from, dates, open, high, low, close, volume, adjustedClose);
+    }
+
+    /**
+     * Rows dated within [startDay, endDay] (epoch days, both inclusive) as a view
+     */
+    public PriceSeries between(final int startDay, final int endDay) {
+        return slice(firstOnOrBefore(endDay), firstOnOrBefore(startDay - 1));
+    }
+
+    //smallest index whose date is <= epochDay, size if there is none (rows are newest first)
+    private int firstOnOrBefore(final int epochDay) {
+        int low = 0, high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (dates[offset + mid] <= epochDay) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Merges two newest-first series into a new one, rows of newer win where both have the same date
+     */
+    public static PriceSeries merge(final PriceSeries newer, final PriceSeries older) {
+        final Builder ret = new Builder(newer.size + older.size);
+        int i = 0, j = 0;
+        while (i < newer.size || j < older.size) {
+            final boolean takeNewer;
+            if (j >= older.size) {
+                takeNewer = true;
+            } else if (i >= newer.size) {
+                takeNewer = false;
+            } else {
+                final int a = newer.getEpochDay(i), b = older.getEpochDay(j);
+                if (a == b) {
+                    j++;
+                }
+                takeNewer = a >= b;
+            }
+            final PriceSeries from = takeNewer ? newer : older;
+            final int index = takeNewer ? i++ : j++;
+            ret.add(from.getEpochDay(index), from.getOpen(index), from.getHigh(index), from.getLow(index), from.getClose(index), from.getVolume(index), from.getAdjustedClose(index));
+        }
+        return ret.build();
+    }
+
+    /**
+     * Writes the columns to file through FileManager.write, so a reader never maps a half written file
+     */
+    public void write(final File file) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size * (Integer.BYTES + 6 * Double.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(size);
+        buffer.asIntBuffer().put(dates, offset, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        for (final double[] column : new double[][]{open, high, low, close, adjustedClose}) {
+            buffer.asDoubleBuffer().put(column, offset, size);
+            buffer.position(buffer.position() + size * Double.BYTES);
+        }
+        buffer.asLongBuffer().put(volume, offset, size);
+        buffer.position(0);
+        FileManager.write(file, temp -> {
+            try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads a file written by write(File) through FileManager.read, so it counts as used for the cache's LRU order,
+     * and bulk copies its columns
+     */
+    public static PriceSeries read(final File file) throws IOException {
+        final ByteBuffer buffer = FileManager.read(file).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a price series file: " + file);
+        }
+        final int size = buffer.getInt();
+        if (size < 0 || buffer.remaining() != (long) size * (Integer.BYTES + 6 * Double.BYTES)) {
+            throw new IOException("Truncated price series file: " + file);
+        }
+        final int[] dates = new int[size];
+        buffer.asIntBuffer().get(dates);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        final double[][] columns = new double[5][size];
+        for (final double[] column : columns) {
+            buffer.asDoubleBuffer().get(column);
+            buffer.position(buffer.position() + size * Double.BYTES);
+        }
+        final long[] volume = new long[size];
+        buffer.asLongBuffer().get(volume);
+        return new PriceSeries(size, dates, columns[0], columns[1], columns[2], columns[3], volume, columns[4]);
+    }
+
+    public static class Builder {
+        private int size;
+        private int[] dates;
+        private double[] open, high, low, close, adjustedClose;
+        private long[] volume;
+
+        public Builder() {
+            this(64);
+        }
+
+        public Builder(final int capacity) {
+            dates = new int[capacity];
+            open = new double[capacity];
+            high = new double[capacity];
+            low = new double[capacity];
+            close = new double[capacity];
+            volume = new long[capacity];
+            adjustedClose = new double[capacity];
+        }
+
+        public Builder add(int epochDay, double open, double high, double low, double close, long volume, double adjustedClose) {
+            if (size == dates.length) {
+                grow(size * 2 + 1);
+            }
+            this.dates[size] = epochDay;
+            this.open[size] = open;
+            this.high[size] = high;
+            this.low[size] = low;
+            this.close[size] = close;
+            this.volume[size] = volume;
+            this.adjustedClose[size] = adjustedClose;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PriceSeries build() {
+            grow(size);
+            return new PriceSeries(size, dates, open, high, low, close, volume, adjustedClose);
+        }
+
+        private void grow(final int capacity) {
+            if (capacity == dates.length) {
+                return;
+            }
+            dates = Arrays.copyOf(dates, capacity);
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+            adjustedClose = Arrays.copyOf(adjustedClose, capacity);
+        }
+    }
+}
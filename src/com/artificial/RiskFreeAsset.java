@@ -5,7 +5,7 @@ public class RiskFreeAsset extends Stock {
     public static final RiskFreeAsset[] VALUES = {TEN_YEAR_T_BILLS};
 
     private RiskFreeAsset(String symbol) {
-        super(symbol);
+        super(symbol, true);
     }
 
     @Override
@@ -1,85 +1,146 @@
 package com.artificial;
 
-import com.artificial.json.JsonObject;
-import com.artificial.json.JsonValue;
+import com.artificial.json.JsonPath;
+import com.artificial.json.JsonReader;
+import com.artificial.json.JsonSymbolTable;
 
-import java.io.*;
-import java.util.Calendar;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class Stock implements Security, Asset {
     public static final String SYMBOLS_KEY = "SYMBOLS_KEY";
     public static final String QUOTE_URL = "https://query.yahooapis.com/v1/public/yql?q=select%20*%20from%20yahoo.finance.quotes%20where%20symbol%20in%20(" + SYMBOLS_KEY + ")&format=json&env=store%3A%2F%2Fdatatables.org%2Falltableswithkeys&callback=";
     public static final String SYMBOL_SEPARATOR = "%22";
-    private final Map<DateKey, AssetHistory> stockHistory = new HashMap<>();
+    //quotes are used for an hour before the server is asked again
+    static final long QUOTE_TTL = TimeUnit.HOURS.toMillis(1);
+    //the numeric fields come first, EarningsShare and DividendYield are percent
+    private static final JsonPath QUOTE_FIELDS = JsonPath.compile(
+            "query.results.quote.EarningsShare",
+            "query.results.quote.Open",
+            "query.results.quote.DividendShare",
+            "query.results.quote.DividendYield",
+            "query.results.quote.Name",
+            "query.results.quote.BookValue");
+    private static final int QUOTE_NUMBERS = 4, NAME = 4, BOOK_VALUE = 5;
+    //distinct (start, end) windows kept per stock, the UI only ever asks for a few
+    private static final int MAX_CACHED_HISTORIES = 16;
+    private final HistoryCache stockHistory = new HistoryCache(MAX_CACHED_HISTORIES);
     private String symbol, name;
     private double eps, price, dividends, dividendYield;
     private boolean loaded = true;
+    //set once the quote has been fetched (or failed), all quote fields are written before it
+    private volatile boolean quoteLoaded;
 
     public Stock(String symbol) {
+        this(symbol, false);
+    }
+
+    /**
+     * @param lazy defer the quote fetch until a quote field is first read, or until StockLoader.prefetch
+     */
+    protected Stock(final String symbol, final boolean lazy) {
         this.symbol = symbol;
-        try {
-            final JsonObject parent = JsonObject.readFrom(getQuoteData());
-            if (!validateQuote(parent)) {
+        if (!lazy) {
+            loadQuote();
+        }
+    }
+
+    private void loadQuote() {
+        if (quoteLoaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!quoteLoaded) {
+                readQuote();
+                quoteLoaded = true;
+            }
+        }
+    }
+
+    private void readQuote() {
+        try (final JsonReader reader = new JsonReader(getQuoteData())) {
+            //every quote has the same ~80 field names, look them up instead of creating them per stock
+            reader.setSymbolTable(JsonSymbolTable.GLOBAL);
+            final double[] numbers = new double[QUOTE_NUMBERS];
+            final String[] name = {""};
+            //one bit per field of QUOTE_FIELDS, all of them must be present and BookValue must not be null
+            final int[] found = {0};
+            QUOTE_FIELDS.read(reader, (path, element, r) -> {
+                if (r.peek() == JsonReader.Token.NULL) {
+                    r.nextNull();
+                    if (path != BOOK_VALUE) {
+                        found[0] |= 1 << path;
+                    }
+                    return;
+                }
+                if (path < QUOTE_NUMBERS) {
+                    numbers[path] = r.nextDouble();
+                } else if (path == NAME) {
+                    name[0] = r.nextString();
+                } else {
+                    r.skipValue();
+                }
+                found[0] |= 1 << path;
+            });
+            if (found[0] != (1 << QUOTE_FIELDS.size()) - 1) {
                 throw new Exception("Quote for " + symbol + " is not valid!");
             }
-            final JsonObject quote = parent.get("query").asObject().get("results").asObject().get("quote").asObject();
-            //percent
-            final JsonValue eps = quote.get("EarningsShare");
-            final JsonValue price = quote.get("Open");
-            final JsonValue dividends = quote.get("DividendShare");
-            final JsonValue name = quote.get("Name");
-            //percent
-            final JsonValue dividendYield = quote.get("DividendYield");
-
-            this.eps = eps.isNull() ? 0 : Double.parseDouble(eps.asString());
-            this.price = price.isNull() ? 0 : Double.parseDouble(price.asString());
-            this.dividends = dividends.isNull() ? 0 : Double.parseDouble(dividends.asString());
-            this.name = name.isNull() ? "" : name.asString();
-            this.dividendYield = dividendYield.isNull() ? 0 : Double.parseDouble(dividendYield.asString());
+            this.eps = numbers[0];
+            this.price = numbers[1];
+            this.dividends = numbers[2];
+            this.dividendYield = numbers[3];
+            this.name = name[0];
         } catch (Exception e) {
             e.printStackTrace();
             loaded = false;
         }
     }
 
-    private boolean validateQuote(final JsonObject quote) {
-        if (quote.get("error") != null) {
-            return false;
-        }
-        return !quote.get("query").asObject().get("results").asObject().get("quote").asObject().get("BookValue").isNull();
-    }
-
-    private String getQuoteData() throws IOException {
-        final Calendar curr = Calendar.getInstance();
-        final String fileName = symbol + "_QUOTE_" + new Date(curr.get(Calendar.YEAR), curr.get(Calendar.MONTH) + 1, curr.get(Calendar.DAY_OF_MONTH));
-        final File file = FileManager.getFile(fileName);
-        if (file.exists()) {
-            String ret = "";
-            try (final BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String s;
-                while ((s = reader.readLine()) != null) {
-                    ret += s;
-                }
+    /**
+     * Non-blocking alternative to the constructor, see StockLoader
+     */
+    public static CompletableFuture<Stock> loadAsync(final String symbol) {
+        return StockLoader.load(symbol);
+    }
+
+    /**
+     * Quote cache file of symbol, kept for QUOTE_TTL and revalidated after that
+     */
+    static File quoteFile(final String symbol) {
+        return FileManager.getFile(symbol.toUpperCase() + "_QUOTE");
+    }
+
+    /**
+     * Quote URL for the given symbols, YQL accepts any number of them in one request
+     */
+    static String quoteUrl(final Iterable<String> symbols) {
+        final StringBuilder symbolData = new StringBuilder();
+        for (final String s : symbols) {
+            if (symbolData.length() > 0) {
+                symbolData.append("%2C");
             }
-            return ret;
-        } else {
-            file.createNewFile();
+            symbolData.append(SYMBOL_SEPARATOR).append(s).append(SYMBOL_SEPARATOR);
         }
-        final String symbolData = SYMBOL_SEPARATOR + symbol + SYMBOL_SEPARATOR;
-        final String data = HttpUtil.downloadString(QUOTE_URL.replace(SYMBOLS_KEY, symbolData));
-        try (final BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write(data);
-        }
-        return data;
+        return QUOTE_URL.replace(SYMBOLS_KEY, symbolData);
+    }
+
+    private ByteBuffer getQuoteData() throws IOException {
+        final File file = quoteFile(symbol);
+        HttpUtil.downloadCached(quoteUrl(Collections.singletonList(symbol)), file, QUOTE_TTL);
+        return FileManager.read(file);
     }
 
     public boolean isLoaded() {
+        loadQuote();
         return loaded;
     }
 
     public double getDividendYield() {
+        loadQuote();
         return dividendYield;
     }
 
@@ -90,34 +151,39 @@ public class Stock implements Security, Asset {
 
     @Override
     public String getName() {
+        loadQuote();
         return name;
     }
 
     public double getEps() {
+        loadQuote();
         return eps;
     }
 
     public double getPrice() {
+        loadQuote();
         return price;
     }
 
     public double getDividends() {
+        loadQuote();
         return dividends;
     }
 
     @Override
     public AssetHistory getHistory(final Date start, final Date end) {
-        final DateKey key = new DateKey(start, end);
-        if (stockHistory.containsKey(key)) {
-            return stockHistory.get(key);
-        }
-        final AssetHistory history = new AssetHistory(symbol, start, end);
-        stockHistory.put(key, history);
-        return history;
+        return stockHistory.get(start, end, () -> new AssetHistory(symbol, start, end));
+    }
+
+    public HistoryCache getHistoryCache() {
+        return stockHistory;
     }
 
+    /**
+     * Name once the quote is loaded, symbol until then, never blocks
+     */
     @Override
     public String toString() {
-        return getName();
+        return quoteLoaded && loaded ? name : symbol;
     }
 }
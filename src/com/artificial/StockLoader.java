@@ -0,0 +1,196 @@
+package com.artificial;
+
+import com.artificial.json.JsonGenerator;
+import com.artificial.json.JsonObject;
+import com.artificial.json.JsonPath;
+import com.artificial.json.JsonReader;
+import com.artificial.json.JsonValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Loads stocks off the calling thread on a bounded pool of I/O threads.
+ * Concurrent requests for the same symbol share one load, and quotes missing from the cache
+ * are fetched up to MAX_BATCH_SIZE symbols per request.
+ */
+public class StockLoader {
+    //quote downloads in flight at once, the rest wait in the pool's queue
+    private static final int MAX_CONCURRENT_LOADS = 8;
+    //symbols per quote request, keeps the YQL query string well under URL length limits
+    private static final int MAX_BATCH_SIZE = 50;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_LOADS, r -> {
+        final Thread thread = new Thread(r, "StockLoader-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    //each quote of a batch response, only one of them is held as a tree at a time
+    private static final JsonPath QUOTES = JsonPath.compile("query.results.quote[*]");
+    private static final Map<String, CompletableFuture<Stock>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /**
+     * Completes with the stock once its quote has been fetched, check Stock.isLoaded() for failures
+     */
+    public static CompletableFuture<Stock> load(final String symbol) {
+        return loadAll(Collections.singletonList(symbol)).get(symbol.toUpperCase());
+    }
+
+    /**
+     * Loads every symbol, one quote request per batch of uncached symbols
+     *
+     * @return futures keyed by upper case symbol, in the order given
+     */
+    public static Map<String, CompletableFuture<Stock>> loadAll(final Collection<String> symbols) {
+        final Map<String, CompletableFuture<Stock>> ret = new LinkedHashMap<>();
+        List<String> batch = new ArrayList<>();
+        List<CompletableFuture<Stock>> batchFutures = new ArrayList<>();
+        for (final String symbol : symbols) {
+            final String key = symbol.toUpperCase();
+            if (ret.containsKey(key)) {
+                continue;
+            }
+            final CompletableFuture<Stock> created = new CompletableFuture<>();
+            final CompletableFuture<Stock> existing = IN_FLIGHT.putIfAbsent(key, created);
+            if (existing != null) {
+                ret.put(key, existing);
+                continue;
+            }
+            ret.put(key, created);
+            batch.add(key);
+            batchFutures.add(created);
+            if (batch.size() == MAX_BATCH_SIZE) {
+                submit(batch, batchFutures);
+                batch = new ArrayList<>();
+                batchFutures = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(batch, batchFutures);
+        }
+        return ret;
+    }
+
+    /**
+     * Runs task on the loader's I/O pool rather than the common pool, for work that may download,
+     * such as the price histories behind Stock.getBeta
+     */
+    public static <T> CompletableFuture<T> supplyAsync(final Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, EXECUTOR);
+    }
+
+    /**
+     * Fetches the quotes of already constructed (lazy) stocks in the background, one batch request
+     * for the uncached ones, then each stock's quote is read on its own pool thread
+     */
+    public static CompletableFuture<Void> prefetch(final Stock... stocks) {
+        final List<String> symbols = new ArrayList<>();
+        for (final Stock stock : stocks) {
+            symbols.add(stock.getSymbol().toUpperCase());
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                prefetchQuotes(symbols);
+            } catch (Exception e) {
+                Debug.info("Batch quote request failed for " + symbols + ", loading one by one");
+            }
+        }, EXECUTOR).thenCompose(ignored -> {
+            final CompletableFuture<?>[] loads = new CompletableFuture<?>[stocks.length];
+            for (int i = 0; i < stocks.length; i++) {
+                final Stock stock = stocks[i];
+                loads[i] = CompletableFuture.runAsync(stock::isLoaded, EXECUTOR);
+            }
+            return CompletableFuture.allOf(loads);
+        });
+    }
+
+    private static void submit(final List<String> batch, final List<CompletableFuture<Stock>> futures) {
+        EXECUTOR.execute(() -> {
+            try {
+                prefetchQuotes(batch);
+            } catch (Exception e) {
+                //each Stock falls back to fetching its own quote
+                Debug.info("Batch quote request failed for " + batch + ", loading one by one");
+            }
+            //each stock on its own pool thread, so fallback quote and history fetches overlap
+            for (int i = 0; i < batch.size(); i++) {
+                final String symbol = batch.get(i);
+                final CompletableFuture<Stock> future = futures.get(i);
+                EXECUTOR.execute(() -> {
+                    try {
+                        future.complete(new Stock(symbol));
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    } finally {
+                        IN_FLIGHT.remove(symbol, future);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Downloads the quotes of symbols without a fresh cache file in one request and splits the
+     * results.quote array into one cache file per symbol, in the same shape as a single-symbol response
+     */
+    private static void prefetchQuotes(final List<String> symbols) throws IOException {
+        final List<String> missing = new ArrayList<>();
+        for (final String symbol : symbols) {
+            final CacheMetadata cached = CacheMetadata.read(Stock.quoteFile(symbol), Stock.QUOTE_TTL);
+            if (cached == null || !cached.isFresh()) {
+                missing.add(symbol);
+            }
+        }
+        //a single symbol is fetched by the Stock itself, at the same cost
+        if (missing.size() < 2) {
+            return;
+        }
+        HttpUtil.download(Stock.quoteUrl(missing), in -> {
+            try (final JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                final int[] quotes = {0};
+                QUOTES.read(reader, (path, element, r) -> {
+                    quotes[0]++;
+                    final JsonObject quote = r.nextValue().asObject();
+                    final JsonValue symbolValue = quote.get("symbol");
+                    //the response order is not relied on, quotes without a symbol are left to the per-stock fallback
+                    if (symbolValue == null || !symbolValue.isString()) {
+                        return;
+                    }
+                    final String symbol = symbolValue.asString().toUpperCase();
+                    if (!missing.contains(symbol)) {
+                        return;
+                    }
+                    final File file = Stock.quoteFile(symbol);
+                    //the same shape as a single quote response
+                    FileManager.write(file, temp -> {
+                        try (final JsonGenerator generator = new JsonGenerator(Files.newBufferedWriter(temp))) {
+                            generator.beginObject().name("query").beginObject().name("results").beginObject()
+                                    .name("quote").value(quote)
+                                    .endObject().endObject().endObject();
+                        }
+                    });
+                    CacheMetadata.touch(file, Stock.QUOTE_TTL);
+                });
+                if (quotes[0] == 0) {
+                    throw new IOException("Quote response has no quote array");
+                }
+            }
+            return null;
+        });
+    }
+}
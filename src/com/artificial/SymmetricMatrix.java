@@ -0,0 +1,128 @@
+package com.artificial;
+
+import java.util.Arrays;
+
+/**
+ * Square symmetric matrix storing only the upper triangle, packed row by row into a double[] of n(n+1)/2 elements.
+ */
+public class SymmetricMatrix {
+    private final int size;
+    private final double[] data;
+    private CholeskyDecomposition decomposition;
+
+    public SymmetricMatrix(final int size) {
+        this.size = size;
+        this.data = new double[size * (size + 1) / 2];
+    }
+
+    /**
+     * Copies the upper triangle of m, the lower triangle is ignored
+     */
+    public SymmetricMatrix(final Matrix m) {
+        this(m.getRows());
+        if (m.getRows() != m.getColumns()) {
+            throw new IllegalArgumentException("Required square matrix, found " + m.getRows() + "x" + m.getColumns());
+        }
+        for (int row = 0, i = 0; row < size; row++) {
+            for (int col = row; col < size; col++) {
+                data[i++] = m.get(row, col);
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double get(final int row, final int column) {
+        if (row < 0 || row >= size || column < 0 || column >= size) {
+            throw new IllegalArgumentException();
+        }
+        return row <= column ? data[index(row, column)] : data[index(column, row)];
+    }
+
+    /**
+     * Sets both (row, column) and (column, row)
+     */
+    public void put(final double obj, final int row, final int column) {
+        if (row < 0 || row >= size || column < 0 || column >= size) {
+            return;
+        }
+        data[row <= column ? index(row, column) : index(column, row)] = obj;
+        decomposition = null;
+    }
+
+    /**
+     * Cholesky factorization of this matrix, computed once and reused until the matrix is modified
+     */
+    public CholeskyDecomposition cholesky() {
+        if (decomposition == null) {
+            decomposition = new CholeskyDecomposition(this);
+        }
+        return decomposition;
+    }
+
+    /**
+     * Solves this * X = rhs for X
+     */
+    public Matrix solve(final Matrix rhs) {
+        if (rhs.getRows() != size) {
+            return null;
+        }
+        return cholesky().solve(rhs);
+    }
+
+    public Matrix inverse() {
+        return cholesky().inverse();
+    }
+
+    public double determinant() {
+        return cholesky().determinant();
+    }
+
+    public Matrix multiply(final Matrix m) {
+        if (m.getRows() != size) {
+            return null;
+        }
+        return toMatrix().multiply(m);
+    }
+
+    public Matrix toMatrix() {
+        final double[] ret = new double[size * size];
+        for (int row = 0, i = 0; row < size; row++) {
+            for (int col = row; col < size; col++, i++) {
+                ret[row * size + col] = data[i];
+                ret[col * size + row] = data[i];
+            }
+        }
+        return new Matrix(size, size, ret);
+    }
+
+    /**
+     * Returns the diagonal elements
+     */
+    public double[] getDiagonal() {
+        final double[] ret = new double[size];
+        for (int i = 0; i < size; i++) {
+            ret[i] = data[index(i, i)];
+        }
+        return ret;
+    }
+
+    private int index(final int row, final int column) {
+        return row * (2 * size - row - 1) / 2 + column;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        final double[] row = new double[size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                row[j] = get(i, j);
+            }
+            builder.append(Arrays.toString(row)).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package com.artificial;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses Yahoo price and dividend CSV files straight from bytes, decoding dates and numbers in place
+ * without creating a String per line or field.
+ * Rows are "yyyy-mm-dd,value,..." separated by \n or \r\n, the first line is a header.
+ */
+public class YahooCsvParser {
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    public YahooCsvParser(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    public static PriceSeries parsePrices(final ByteBuffer buffer) {
+        final YahooCsvParser parser = new YahooCsvParser(buffer);
+        //monthly files are short, daily files are ~45 bytes per row
+        final PriceSeries.Builder ret = new PriceSeries.Builder(Math.max(16, buffer.remaining() / 48));
+        parser.skipLine();
+        while (parser.hasNext()) {
+            final int date = parser.readDate();
+            final double open = parser.readDouble();
+            final double high = parser.readDouble();
+            final double low = parser.readDouble();
+            final double close = parser.readDouble();
+            final long volume = parser.readLong();
+            final double adjustedClose = parser.readDouble();
+            ret.add(date, open, high, low, close, volume, adjustedClose);
+            parser.skipLine();
+        }
+        return ret.build();
+    }
+
+    public static List<AssetHistory.Dividend> parseDividends(final ByteBuffer buffer) {
+        final YahooCsvParser parser = new YahooCsvParser(buffer);
+        final List<AssetHistory.Dividend> ret = new ArrayList<>();
+        parser.skipLine();
+        while (parser.hasNext()) {
+            final int date = parser.readDate();
+            ret.add(new AssetHistory.Dividend(Date.ofEpochDay(date), parser.readDouble()));
+            parser.skipLine();
+        }
+        return ret;
+    }
+
+    /**
+     * True if there is another non-empty line
+     */
+    public boolean hasNext() {
+        while (position < limit) {
+            final byte b = buffer.get(position);
+            if (b != '\n' && b != '\r') {
+                return true;
+            }
+            position++;
+        }
+        return false;
+    }
+
+    public void skipLine() {
+        while (position < limit && buffer.get(position++) != '\n') ;
+    }
+
+    /**
+     * Reads yyyy-mm-dd and the following separator, returns days since 1970-01-01
+     */
+    public int readDate() {
+        final int year = readDigits();
+        expect('-');
+        final int month = readDigits();
+        expect('-');
+        final int day = readDigits();
+        skipSeparator();
+        return Date.toEpochDay(year, month, day);
+    }
+
+    public long readLong() {
+        final int start = position;
+        final boolean negative = position < limit && buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        byte b;
+        while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            position++;
+            digits++;
+        }
+        if (digits == 0 || digits > 18 || !atFieldEnd()) {
+            return Long.parseLong(fallback(start));
+        }
+        skipSeparator();
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes [-]digits[.digits][e[+-]digits], exact whenever the significand fits in 2^53 and the
+     * scale is within the exactly representable powers of ten, otherwise hands the token to Double.parseDouble
+     */
+    public double readDouble() {
+        final int start = position;
+        final boolean negative = position < limit && buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long significand = 0;
+        int digits = 0, scale = 0;
+        byte b = 0;
+        while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+            significand = significand * 10 + (b - '0');
+            position++;
+            digits++;
+        }
+        if (position < limit && b == '.') {
+            position++;
+            while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+                significand = significand * 10 + (b - '0');
+                position++;
+                digits++;
+                scale--;
+            }
+        }
+        if (position < limit && (b == 'e' || b == 'E')) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < limit && ((b = buffer.get(position)) == '-' || b == '+')) {
+                negativeExponent = b == '-';
+                position++;
+            }
+            int exponent = 0;
+            while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9' && exponent < 10000) {
+                exponent = exponent * 10 + (b - '0');
+                position++;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (digits == 0 || digits > 15 || Math.abs(scale) > MAX_EXACT_POWER_OF_TEN || !atFieldEnd()) {
+            return Double.parseDouble(fallback(start));
+        }
+        skipSeparator();
+        final double value = scale < 0 ? significand / POWERS_OF_TEN[-scale] : significand * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private int readDigits() {
+        int value = 0;
+        byte b;
+        final int start = position;
+        while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            position++;
+        }
+        if (position == start) {
+            throw new NumberFormatException("Expected digits at byte " + position);
+        }
+        return value;
+    }
+
+    private void expect(final char c) {
+        if (position >= limit || buffer.get(position) != c) {
+            throw new NumberFormatException("Expected '" + c + "' at byte " + position);
+        }
+        position++;
+    }
+
+    private boolean atFieldEnd() {
+        if (position >= limit) {
+            return true;
+        }
+        final byte b = buffer.get(position);
+        return b == ',' || b == '\n' || b == '\r';
+    }
+
+    private void skipSeparator() {
+        if (position < limit && buffer.get(position) == ',') {
+            position++;
+        }
+    }
+
+    //slow path for tokens the in-place decoder does not cover, rewinds to start and returns the whole field
+    private String fallback(final int start) {
+        position = start;
+        while (!atFieldEnd()) {
+            position++;
+        }
+        final byte[] token = new byte[position - start];
+        for (int i = 0; i < token.length; i++) {
+            token[i] = buffer.get(start + i);
+        }
+        skipSeparator();
+        return new String(token, StandardCharsets.US_ASCII);
+    }
+}
@@ -11,6 +11,7 @@ package com.artificial.json; /**************************************************
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -109,6 +110,30 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
         return JsonValue.readFrom(string).asArray();
     }
 
+    /**
+     * Reads a JSON array from the remaining UTF-8 encoded bytes of the given buffer, which is not modified.
+     *
+     * @param bytes the buffer that contains the JSON array
+     * @return the JSON array that has been read
+     * @throws ParseException                if the input is not havePayment JSON
+     * @throws UnsupportedOperationException if the input does not contain a JSON array
+     */
+    public static JsonArray readFrom(ByteBuffer bytes) {
+        return JsonValue.readFrom(bytes).asArray();
+    }
+
+    /**
+     * Reads a JSON array from the given UTF-8 encoded bytes.
+     *
+     * @param bytes the bytes that contain the JSON array
+     * @return the JSON array that has been read
+     * @throws ParseException                if the input is not havePayment JSON
+     * @throws UnsupportedOperationException if the input does not contain a JSON array
+     */
+    public static JsonArray readFrom(byte[] bytes) {
+        return JsonValue.readFrom(bytes).asArray();
+    }
+
     /**
      * Returns an unmodifiable wrapper for the specified JsonArray. This method allows to provide
      * read-only access to a JsonArray.
@@ -0,0 +1,253 @@
+package com.artificial.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a JSON document one token at a time, without building a tree of {@link JsonValue}s.
+ * <p>
+ * The counterpart of {@link JsonReader}: callers open and close objects and arrays, and write names
+ * and values in between. Separators and, with {@link WriterConfig#PRETTY_PRINT}, whitespace are
+ * inserted as needed. Output is collected in an internal buffer and passed to the writer in chunks,
+ * numbers are formatted straight into that buffer:
+ * </p>
+ * <p/>
+ * <pre>
+ * generator.beginObject()
+ *   .name( "weights" ).beginArray();
+ * for( double weight : weights ) {
+ *   generator.value( weight );
+ * }
+ * generator.endArray()
+ *   .endObject()
+ *   .close();
+ * </pre>
+ * <p>
+ * Calls that would produce invalid JSON, such as a value where a name is expected, cause an
+ * {@link IllegalStateException}.
+ * </p>
+ */
+public class JsonGenerator implements Closeable, Flushable {
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    // a name has been written, its value has not
+    private static final int DANGLING_NAME = 6;
+    private final Writer output;
+    private final JsonWriter writer;
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    /**
+     * Creates a generator that writes JSON in its minimal form to the given writer.
+     *
+     * @param writer the writer to write the JSON text to
+     */
+    public JsonGenerator(Writer writer) {
+        this(writer, WriterConfig.MINIMAL);
+    }
+
+    /**
+     * Creates a generator that writes JSON to the given writer using the given formatting.
+     *
+     * @param writer the writer to write the JSON text to
+     * @param config a configuration that controls the formatting, e.g. {@link WriterConfig#PRETTY_PRINT}
+     */
+    public JsonGenerator(Writer writer, WriterConfig config) {
+        this.output = writer;
+        this.writer = config.createWriter(writer);
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public JsonGenerator beginObject() throws IOException {
+        beforeValue();
+        writer.writeBeginObject();
+        push(EMPTY_OBJECT);
+        return this;
+    }
+
+    public JsonGenerator endObject() throws IOException {
+        final int scope = stack[stackSize - 1];
+        if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) {
+            throw new IllegalStateException(scope == DANGLING_NAME ? "Expected a value" : "Not in an object");
+        }
+        stackSize--;
+        writer.writeEndObject();
+        return this;
+    }
+
+    public JsonGenerator beginArray() throws IOException {
+        beforeValue();
+        writer.writeBeginArray();
+        push(EMPTY_ARRAY);
+        return this;
+    }
+
+    public JsonGenerator endArray() throws IOException {
+        final int scope = stack[stackSize - 1];
+        if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) {
+            throw new IllegalStateException("Not in an array");
+        }
+        stackSize--;
+        writer.writeEndArray();
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object, which must be followed by its value.
+     *
+     * @param name the name of the member
+     * @return the generator itself, to enable method chaining
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    public JsonGenerator name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name is null");
+        }
+        final int scope = stack[stackSize - 1];
+        if (scope == NONEMPTY_OBJECT) {
+            writer.writeObjectValueSeparator();
+        } else if (scope != EMPTY_OBJECT) {
+            throw new IllegalStateException(scope == DANGLING_NAME ? "Expected a value" : "Not in an object");
+        }
+        writer.writeElementStart();
+        writer.writeString(name);
+        writer.writeNameValueSeparator();
+        stack[stackSize - 1] = DANGLING_NAME;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or <code>null</code>.
+     *
+     * @param value the value to write
+     * @return the generator itself, to enable method chaining
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    public JsonGenerator value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writer.writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a number value in the same form as {@link JsonValue#valueOf(double)}.
+     *
+     * @param value the value to write
+     * @return the generator itself, to enable method chaining
+     * @throws IOException if an I/O error occurs in the writer
+     * @throws IllegalArgumentException if value is infinite or NaN
+     */
+    public JsonGenerator value(double value) throws IOException {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Infinite and NaN values not permitted in JSON");
+        }
+        beforeValue();
+        writer.writeNumber(value);
+        return this;
+    }
+
+    public JsonGenerator value(long value) throws IOException {
+        beforeValue();
+        writer.writeNumber(value);
+        return this;
+    }
+
+    public JsonGenerator value(boolean value) throws IOException {
+        beforeValue();
+        writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonGenerator nullValue() throws IOException {
+        beforeValue();
+        writer.write("null");
+        return this;
+    }
+
+    /**
+     * Writes the given value, e.g. an object built with {@link JsonObject}, in the formatting of
+     * this generator.
+     *
+     * @param value the value to write
+     * @return the generator itself, to enable method chaining
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    public JsonGenerator value(JsonValue value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        value.write(writer);
+        return this;
+    }
+
+    /**
+     * Passes the buffered output to the underlying writer and flushes it.
+     *
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    public void flush() throws IOException {
+        writer.flush();
+        output.flush();
+    }
+
+    /**
+     * Passes the buffered output to the underlying writer and closes it.
+     *
+     * @throws IOException if an I/O error occurs in the writer, or if the document is incomplete
+     */
+    public void close() throws IOException {
+        writer.flush();
+        output.close();
+        final boolean complete = stackSize == 1 && stack[0] == NONEMPTY_DOCUMENT;
+        stack[0] = -1;
+        stackSize = 1;
+        if (!complete) {
+            throw new IOException("Incomplete document");
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        switch (stack[stackSize - 1]) {
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("JSON must have only one top-level value");
+            case NONEMPTY_ARRAY:
+                writer.writeArrayValueSeparator();
+                writer.writeElementStart();
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                writer.writeElementStart();
+                break;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                throw new IllegalStateException("Expected a name");
+            default:
+                throw new IllegalStateException("JsonGenerator is closed");
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            final int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+}
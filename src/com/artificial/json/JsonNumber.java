@@ -16,6 +16,9 @@ import java.io.IOException;
         // use default serial UID
 class JsonNumber extends JsonValue {
     private final String string;
+    // decoded on the first asDouble() unless the parser already decoded it, written before decoded
+    private transient double value;
+    private transient volatile boolean decoded;
 
     JsonNumber(String string) {
         if (string == null) {
@@ -24,6 +27,12 @@ class JsonNumber extends JsonValue {
         this.string = string;
     }
 
+    JsonNumber(String string, double value) {
+        this(string);
+        this.value = value;
+        this.decoded = true;
+    }
+
     @Override
     public boolean isNumber() {
         return true;
@@ -46,7 +55,11 @@ class JsonNumber extends JsonValue {
 
     @Override
     public double asDouble() {
-        return Double.parseDouble(string);
+        if (!decoded) {
+            value = Double.parseDouble(string);
+            decoded = true;
+        }
+        return value;
     }
 
     @Override
@@ -13,6 +13,7 @@ package com.artificial.json;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -69,7 +70,7 @@ public class JsonObject extends JsonValue implements Iterable<JsonObject.Member>
     public JsonObject() {
         names = new ArrayList<String>();
         values = new ArrayList<JsonValue>();
-        table = new HashIndexTable();
+        table = new HashIndexTable(names);
     }
 
     /**
@@ -88,12 +89,13 @@ public class JsonObject extends JsonValue implements Iterable<JsonObject.Member>
         if (unmodifiable) {
             names = Collections.unmodifiableList(object.names);
             values = Collections.unmodifiableList(object.values);
+            // a view of object, the index object maintains stays valid for it
+            table = object.table;
         } else {
             names = new ArrayList<String>(object.names);
             values = new ArrayList<JsonValue>(object.values);
+            table = new HashIndexTable(names);
         }
-        table = new HashIndexTable();
-        updateHashIndex();
     }
 
     /**
@@ -126,6 +128,30 @@ public class JsonObject extends JsonValue implements Iterable<JsonObject.Member>
         return JsonValue.readFrom(string).asObject();
     }
 
+    /**
+     * Reads a JSON object from the remaining UTF-8 encoded bytes of the given buffer, which is not modified.
+     *
+     * @param bytes the buffer that contains the JSON object
+     * @return the JSON object that has been read
+     * @throws ParseException                if the input is not havePayment JSON
+     * @throws UnsupportedOperationException if the input does not contain a JSON object
+     */
+    public static JsonObject readFrom(ByteBuffer bytes) {
+        return JsonValue.readFrom(bytes).asObject();
+    }
+
+    /**
+     * Reads a JSON object from the given UTF-8 encoded bytes.
+     *
+     * @param bytes the bytes that contain the JSON object
+     * @return the JSON object that has been read
+     * @throws ParseException                if the input is not havePayment JSON
+     * @throws UnsupportedOperationException if the input does not contain a JSON object
+     */
+    public static JsonObject readFrom(byte[] bytes) {
+        return JsonValue.readFrom(bytes).asObject();
+    }
+
     /**
      * Returns an unmodifiable JsonObject for the specified one. This method allows to provide
      * read-only access to a JsonObject.
@@ -463,9 +489,9 @@ public class JsonObject extends JsonValue implements Iterable<JsonObject.Member>
         }
         int index = indexOf(name);
         if (index != -1) {
-            table.remove(index);
             names.remove(index);
             values.remove(index);
+            table.rebuild();
         }
         return this;
     }
@@ -581,25 +607,13 @@ public class JsonObject extends JsonValue implements Iterable<JsonObject.Member>
     }
 
     int indexOf(String name) {
-        int index = table.get(name);
-        if (index != -1 && name.equals(names.get(index))) {
-            return index;
-        }
-        return names.lastIndexOf(name);
+        return table.get(name);
     }
 
     private synchronized void readObject(ObjectInputStream inputStream) throws IOException,
             ClassNotFoundException {
         inputStream.defaultReadObject();
-        table = new HashIndexTable();
-        updateHashIndex();
-    }
-
-    private void updateHashIndex() {
-        int size = names.size();
-        for (int i = 0; i < size; i++) {
-            table.add(names.get(i), i);
-        }
+        table = new HashIndexTable(names);
     }
 
     /**
@@ -657,46 +671,130 @@ public class JsonObject extends JsonValue implements Iterable<JsonObject.Member>
 
     }
 
+    /*
+     * Index of member names for objects with more than SCAN_LIMIT members, open addressing with linear
+     * probing. Slots hold the member index + 1 (0 stands for empty) of the last member with a name,
+     * next to the cached hash code of the name. The table doubles at 75% load, so lookups stay O(1)
+     * however wide the object gets. Smaller objects are searched linearly, which is faster for them.
+     */
     static class HashIndexTable {
-        private final byte[] hashTable = new byte[32]; // must be a power of two
+        private static final int SCAN_LIMIT = 8;
+        private static final int MIN_CAPACITY = 32; // must be a power of two
+        private final List<String> names;
+        private int[] slots;
+        private int[] hashes;
+        // 32 - log2(capacity), slots are chosen by the top bits of the hash
+        private int shift;
+        private int size;
+
+        HashIndexTable(List<String> names) {
+            this.names = names;
+            rebuild();
+        }
 
-        public HashIndexTable() {
+        void add(String name, int index) {
+            if (slots == null) {
+                if (index < SCAN_LIMIT) {
+                    return;
+                }
+                // index is not in names yet
+                allocate(MIN_CAPACITY);
+                for (int i = 0; i < index; i++) {
+                    put(names.get(i), i);
+                }
+            } else if ((size + 1) * 4 > slots.length * 3) {
+                grow();
+            }
+            put(name, index);
         }
 
-        public HashIndexTable(HashIndexTable original) {
-            System.arraycopy(original.hashTable, 0, hashTable, 0, hashTable.length);
+        int get(String name) {
+            if (slots == null) {
+                return names.lastIndexOf(name);
+            }
+            int hash = hash(name);
+            int mask = slots.length - 1;
+            for (int slot = hash >>> shift; ; slot = slot + 1 & mask) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (hashes[slot] == hash && name.equals(names.get(entry - 1))) {
+                    return entry - 1;
+                }
+            }
         }
 
-        void add(String name, int index) {
-            int slot = hashSlotFor(name);
-            if (index < 0xff) {
-                // increment by 1, 0 stands for empty
-                hashTable[slot] = (byte) (index + 1);
-            } else {
-                hashTable[slot] = 0;
+        /*
+         * Re-indexes all names, needed after members were removed since the indexes behind them shift
+         */
+        void rebuild() {
+            int count = names.size();
+            if (count <= SCAN_LIMIT) {
+                slots = null;
+                hashes = null;
+                size = 0;
+                return;
+            }
+            int capacity = MIN_CAPACITY;
+            while (count * 4 > capacity * 3) {
+                capacity <<= 1;
+            }
+            allocate(capacity);
+            for (int i = 0; i < count; i++) {
+                put(names.get(i), i);
             }
         }
 
-        void remove(int index) {
-            for (int i = 0; i < hashTable.length; i++) {
-                if (hashTable[i] == index + 1) {
-                    hashTable[i] = 0;
-                } else if (hashTable[i] > index + 1) {
-                    hashTable[i]--;
+        private void put(String name, int index) {
+            int hash = hash(name);
+            int mask = slots.length - 1;
+            for (int slot = hash >>> shift; ; slot = slot + 1 & mask) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    slots[slot] = index + 1;
+                    hashes[slot] = hash;
+                    size++;
+                    return;
+                }
+                if (hashes[slot] == hash && name.equals(names.get(entry - 1))) {
+                    // a later member with the same name wins
+                    slots[slot] = index + 1;
+                    return;
                 }
             }
         }
 
-        int get(Object name) {
-            int slot = hashSlotFor(name);
-            // subtract 1, 0 stands for empty
-            return (hashTable[slot] & 0xff) - 1;
+        private void grow() {
+            int[] oldSlots = slots;
+            int[] oldHashes = hashes;
+            allocate(oldSlots.length << 1);
+            int mask = slots.length - 1;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    int slot = oldHashes[i] >>> shift;
+                    while (slots[slot] != 0) {
+                        slot = slot + 1 & mask;
+                    }
+                    slots[slot] = oldSlots[i];
+                    hashes[slot] = oldHashes[i];
+                    size++;
+                }
+            }
         }
 
-        private int hashSlotFor(Object element) {
-            return element.hashCode() & hashTable.length - 1;
+        private void allocate(int capacity) {
+            slots = new int[capacity];
+            hashes = new int[capacity];
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+            size = 0;
         }
 
+        // Fibonacci hashing, names like "SYM1", "SYM2" have consecutive hash codes that would
+        // otherwise fill runs of adjacent slots
+        private static int hash(String name) {
+            return name.hashCode() * 0x9E3779B9;
+        }
     }
 
 }
@@ -13,11 +13,32 @@ package com.artificial.json;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
 class JsonParser {
     private static final int MIN_BUFFER_SIZE = 10;
     private static final int DEFAULT_BUFFER_SIZE = 1024;
+    // more significant digits than this go through Double.parseDouble
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
     private final Reader reader;
+    // UTF-8 input, used instead of reader
+    private final ByteBuffer bytes;
+    private CharsetDecoder decoder;
     private final char[] buffer;
     private int bufferOffset;
     private int index;
@@ -27,6 +48,12 @@ class JsonParser {
     private int current;
     private StringBuilder captureBuffer;
     private int captureStart;
+    private JsonSymbolTable symbols;
+    // the last number scanned, its value is significand * 10^scale
+    private long significand;
+    private int significantDigits;
+    private int scale;
+    private boolean negative;
 
   /*
    * |                      bufferOffset
@@ -48,11 +75,24 @@ class JsonParser {
 
     JsonParser(Reader reader, int buffersize) {
         this.reader = reader;
+        this.bytes = null;
         buffer = new char[buffersize];
         line = 1;
         captureStart = -1;
     }
 
+    /*
+     * Reads UTF-8 from the remaining bytes of the given buffer, which is not modified. ASCII is
+     * copied straight into the char buffer, only other characters go through a decoder.
+     */
+    JsonParser(ByteBuffer bytes) {
+        this.reader = null;
+        this.bytes = bytes.duplicate();
+        buffer = new char[Math.max(MIN_BUFFER_SIZE, Math.min(DEFAULT_BUFFER_SIZE, bytes.remaining()))];
+        line = 1;
+        captureStart = -1;
+    }
+
     JsonValue parse() throws IOException {
         read();
         skipWhiteSpace();
@@ -64,7 +104,7 @@ class JsonParser {
         return result;
     }
 
-    private JsonValue readValue() throws IOException {
+    JsonValue readValue() throws IOException {
         switch (current) {
             case 'n':
                 return readNull();
@@ -141,10 +181,30 @@ class JsonParser {
         if (current != '"') {
             throw expected("name");
         }
-        return readStringInternal();
+        return readNameInternal();
+    }
+
+    /*
+     * Reads a string like readStringInternal, returning the instance held by the symbol table if
+     * one has been set
+     */
+    String readNameInternal() throws IOException {
+        read();
+        startCapture();
+        readStringChars();
+        String name = endCapture(symbols);
+        read();
+        return name;
     }
 
-    private JsonValue readNull() throws IOException {
+    /*
+     * Names read from now on are interned in the given table, or not at all if it is null
+     */
+    void setSymbolTable(JsonSymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    JsonValue readNull() throws IOException {
         read();
         readRequiredChar('u');
         readRequiredChar('l');
@@ -152,7 +212,7 @@ class JsonParser {
         return JsonValue.NULL;
     }
 
-    private JsonValue readTrue() throws IOException {
+    JsonValue readTrue() throws IOException {
         read();
         readRequiredChar('r');
         readRequiredChar('u');
@@ -160,7 +220,7 @@ class JsonParser {
         return JsonValue.TRUE;
     }
 
-    private JsonValue readFalse() throws IOException {
+    JsonValue readFalse() throws IOException {
         read();
         readRequiredChar('a');
         readRequiredChar('l');
@@ -179,9 +239,23 @@ class JsonParser {
         return new JsonString(readStringInternal());
     }
 
-    private String readStringInternal() throws IOException {
+    String readStringInternal() throws IOException {
         read();
         startCapture();
+        return finishString();
+    }
+
+    /*
+     * Reads the rest of a string whose capture has been started, up to and including the closing quote
+     */
+    private String finishString() throws IOException {
+        readStringChars();
+        String string = endCapture();
+        read();
+        return string;
+    }
+
+    private void readStringChars() throws IOException {
         while (current != '"') {
             if (current == '\\') {
                 pauseCapture();
@@ -193,9 +267,49 @@ class JsonParser {
                 read();
             }
         }
-        String string = endCapture();
+    }
+
+    /*
+     * Reads past a string like readStringInternal, validating it without capturing its chars
+     */
+    void skipStringInternal() throws IOException {
+        read();
+        while (current != '"') {
+            if (current == '\\') {
+                skipEscape();
+            } else if (current < 0x20) {
+                throw expected("valid string character");
+            } else {
+                read();
+            }
+        }
+        read();
+    }
+
+    private void skipEscape() throws IOException {
+        read();
+        switch (current) {
+            case '"':
+            case '/':
+            case '\\':
+            case 'b':
+            case 'f':
+            case 'n':
+            case 'r':
+            case 't':
+                break;
+            case 'u':
+                for (int i = 0; i < 4; i++) {
+                    read();
+                    if (!isHexDigit()) {
+                        throw expected("hexadecimal digit");
+                    }
+                }
+                break;
+            default:
+                throw expected("valid escape sequence");
+        }
         read();
-        return string;
     }
 
     private void readEscape() throws IOException {
@@ -240,70 +354,161 @@ class JsonParser {
 
     private JsonValue readNumber() throws IOException {
         startCapture();
-        readChar('-');
-        int firstDigit = current;
-        if (!readDigit()) {
-            throw expected("digit");
+        scanNumber(true);
+        String text = endCapture();
+        return isExact() ? new JsonNumber(text, scannedValue()) : new JsonNumber(text);
+    }
+
+    String readNumberInternal() throws IOException {
+        startCapture();
+        scanNumber(true);
+        return endCapture();
+    }
+
+    void skipNumberInternal() throws IOException {
+        scanNumber(true);
+    }
+
+    /*
+     * Reads a number as double, the text is only turned into a String for Double.parseDouble if
+     * the number cannot be decoded exactly while scanning
+     */
+    double readDoubleInternal() throws IOException {
+        startCapture();
+        scanNumber(true);
+        if (isExact()) {
+            discardCapture();
+            return scannedValue();
         }
-        if (firstDigit != '0') {
-            while (readDigit()) {
-            }
+        return Double.parseDouble(endCapture());
+    }
+
+    /*
+     * Reads a string holding a number (as in "12.5") as double, decoded in place if it is a plain
+     * JSON number. Anything else goes through Double.parseDouble, which throws a
+     * NumberFormatException if the string does not hold a number.
+     */
+    double readStringAsDoubleInternal() throws IOException {
+        read();
+        startCapture();
+        if (scanNumber(false) && current == '"' && isExact()) {
+            discardCapture();
+            read();
+            return scannedValue();
         }
-        readFraction();
-        readExponent();
-        return new JsonNumber(endCapture());
+        return Double.parseDouble(finishString());
     }
 
-    private boolean readFraction() throws IOException {
-        if (!readChar('.')) {
-            return false;
+    /*
+     * Scans a number at the read position into significand, significantDigits and scale.
+     * A strict scan throws on anything but a JSON number, a lenient one returns false instead
+     * and leaves the read position at the first character that does not fit.
+     */
+    private boolean scanNumber(boolean strict) throws IOException {
+        significand = 0;
+        significantDigits = 0;
+        scale = 0;
+        negative = readChar('-');
+        int firstDigit = current;
+        if (!readIntegerDigit()) {
+            return fail(strict, "digit");
         }
-        if (!readDigit()) {
-            throw expected("digit");
+        if (firstDigit != '0') {
+            while (readIntegerDigit()) {
+            }
         }
-        while (readDigit()) {
+        if (readChar('.')) {
+            if (!readFractionDigit()) {
+                return fail(strict, "digit");
+            }
+            while (readFractionDigit()) {
+            }
+        }
+        if (readChar('e') || readChar('E')) {
+            boolean negativeExponent = false;
+            if (!readChar('+')) {
+                negativeExponent = readChar('-');
+            }
+            if (!isDigit()) {
+                return fail(strict, "digit");
+            }
+            int exponent = 0;
+            while (isDigit()) {
+                // larger exponents are never exact, they only need to stay out of the fast path
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + current - '0';
+                }
+                read();
+            }
+            scale += negativeExponent ? -exponent : exponent;
         }
         return true;
     }
 
-    private boolean readExponent() throws IOException {
-        if (!readChar('e') && !readChar('E')) {
-            return false;
+    private boolean fail(boolean strict, String expected) {
+        if (strict) {
+            throw expected(expected);
         }
-        if (!readChar('+')) {
-            readChar('-');
-        }
-        if (!readDigit()) {
-            throw expected("digit");
-        }
-        while (readDigit()) {
+        return false;
+    }
+
+    private boolean readIntegerDigit() throws IOException {
+        if (!isDigit()) {
+            return false;
         }
+        accumulate(current - '0');
+        read();
         return true;
     }
 
-    private boolean readChar(char ch) throws IOException {
-        if (current != ch) {
+    private boolean readFractionDigit() throws IOException {
+        if (!isDigit()) {
             return false;
         }
+        accumulate(current - '0');
+        scale--;
         read();
         return true;
     }
 
-    private boolean readDigit() throws IOException {
-        if (!isDigit()) {
+    private void accumulate(int digit) {
+        // leading zeros are not significant
+        if (significantDigits > 0 || digit != 0) {
+            if (++significantDigits <= MAX_SIGNIFICANT_DIGITS) {
+                significand = significand * 10 + digit;
+            }
+        }
+    }
+
+    /*
+     * Whether significand * 10^scale is exactly the scanned number: both factors are exactly
+     * representable doubles, so the single multiplication or division is correctly rounded
+     */
+    private boolean isExact() {
+        return significantDigits <= MAX_SIGNIFICANT_DIGITS && significand <= MAX_EXACT_SIGNIFICAND
+                && scale >= -MAX_EXACT_POWER_OF_TEN && scale <= MAX_EXACT_POWER_OF_TEN;
+    }
+
+    private double scannedValue() {
+        double value = scale < 0 ? significand / POWERS_OF_TEN[-scale] : significand * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    boolean readChar(char ch) throws IOException {
+        if (current != ch) {
             return false;
         }
         read();
         return true;
     }
 
-    private void skipWhiteSpace() throws IOException {
+    void skipWhiteSpace() throws IOException {
         while (isWhiteSpace()) {
             read();
         }
     }
 
-    private void read() throws IOException {
+    void read() throws IOException {
         if (isEndOfText()) {
             throw error("Unexpected end of input");
         }
@@ -313,7 +518,7 @@ class JsonParser {
                 captureStart = 0;
             }
             bufferOffset += fill;
-            fill = reader.read(buffer, 0, buffer.length);
+            fill = reader != null ? reader.read(buffer, 0, buffer.length) : decode();
             index = 0;
             if (fill == -1) {
                 current = -1;
@@ -327,6 +532,32 @@ class JsonParser {
         current = buffer[index++];
     }
 
+    private int decode() {
+        int n = 0;
+        int position = bytes.position();
+        final int limit = bytes.limit();
+        if (position == limit) {
+            return -1;
+        }
+        byte b;
+        while (n < buffer.length && position < limit && (b = bytes.get(position)) >= 0) {
+            buffer[n++] = (char) b;
+            position++;
+        }
+        bytes.position(position);
+        if (n < buffer.length && position < limit) {
+            if (decoder == null) {
+                decoder = StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            final CharBuffer out = CharBuffer.wrap(buffer, n, buffer.length - n);
+            decoder.decode(bytes, out, true);
+            n = out.position();
+        }
+        return n;
+    }
+
     private void startCapture() {
         if (captureBuffer == null) {
             captureBuffer = new StringBuilder();
@@ -334,6 +565,11 @@ class JsonParser {
         captureStart = index - 1;
     }
 
+    private void discardCapture() {
+        captureBuffer.setLength(0);
+        captureStart = -1;
+    }
+
     private void pauseCapture() {
         int end = current == -1 ? index : index - 1;
         captureBuffer.append(buffer, captureStart, end - captureStart);
@@ -341,12 +577,24 @@ class JsonParser {
     }
 
     private String endCapture() {
+        return endCapture(null);
+    }
+
+    /*
+     * With a symbol table, a capture that lies within the buffer is looked up without creating a String
+     */
+    private String endCapture(JsonSymbolTable symbols) {
         int end = current == -1 ? index : index - 1;
         String captured;
         if (captureBuffer.length() > 0) {
             captureBuffer.append(buffer, captureStart, end - captureStart);
             captured = captureBuffer.toString();
             captureBuffer.setLength(0);
+            if (symbols != null) {
+                captured = symbols.intern(captured);
+            }
+        } else if (symbols != null) {
+            captured = symbols.lookup(buffer, captureStart, end - captureStart);
         } else {
             captured = new String(buffer, captureStart, end - captureStart);
         }
@@ -354,20 +602,27 @@ class JsonParser {
         return captured;
     }
 
-    private ParseException expected(String expected) {
+    ParseException expected(String expected) {
         if (isEndOfText()) {
             return error("Unexpected end of input");
         }
         return error("Expected " + expected);
     }
 
-    private ParseException error(String message) {
+    ParseException error(String message) {
         int absIndex = bufferOffset + index;
         int column = absIndex - lineOffset;
         int offset = isEndOfText() ? absIndex : absIndex - 1;
         return new ParseException(message, offset, line, column - 1);
     }
 
+    /*
+     * The character at the read position, -1 at the end of the input
+     */
+    int current() {
+        return current;
+    }
+
     private boolean isWhiteSpace() {
         return current == ' ' || current == '\t' || current == '\n' || current == '\r';
     }
@@ -382,7 +637,7 @@ class JsonParser {
                 || current >= 'A' && current <= 'F';
     }
 
-    private boolean isEndOfText() {
+    boolean isEndOfText() {
         return current == -1;
     }
 
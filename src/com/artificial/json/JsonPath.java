@@ -0,0 +1,277 @@
+package com.artificial.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One or more compiled paths into a JSON document, matched in a single pass over a {@link JsonReader}.
+ * <p>
+ * A path is a dot separated list of member names, each optionally followed by <code>[*]</code> for
+ * every element of an array or <code>[n]</code> for the element at index n, e.g.
+ * <code>query.results.quote[*].Open</code>. Everything off the paths is skipped by the reader without
+ * being captured, and matched values are handed to a {@link Visitor} or stored in <code>double[]</code>s,
+ * so no {@link JsonValue}s are created:
+ * </p>
+ * <p/>
+ * <pre>
+ * JsonPath path = JsonPath.compile( "query.results.quote[*].Open" );
+ * double[] open = new double[ symbols.size() ];
+ * path.readDoubles( new JsonReader( reader ), open );
+ * </pre>
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ * </p>
+ */
+public final class JsonPath {
+    private final String[] paths;
+    private final Node root = new Node();
+
+    private JsonPath(String[] paths) {
+        this.paths = paths.clone();
+    }
+
+    /**
+     * Compiles the given paths into one matcher. A path may not be a prefix of another one, and
+     * <code>[*]</code> and <code>[n]</code> may not be mixed at the same position.
+     *
+     * @param paths the paths to match, numbered in the given order
+     * @return the compiled paths
+     * @throws IllegalArgumentException if a path is malformed or conflicts with another one
+     */
+    public static JsonPath compile(String... paths) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("No path given");
+        }
+        final JsonPath ret = new JsonPath(paths);
+        for (int i = 0; i < paths.length; i++) {
+            ret.add(paths[i], i);
+        }
+        return ret;
+    }
+
+    /**
+     * Receives the values matched by a {@link JsonPath}.
+     */
+    public interface Visitor {
+        /**
+         * Called with the reader positioned at a matched value, which this method must consume
+         * completely, e.g. with {@link JsonReader#nextDouble()} or {@link JsonReader#skipValue()}.
+         *
+         * @param path    the number of the matched path, in the order given to {@link #compile(String...)}
+         * @param element the index of the innermost <code>[*]</code> element on the path, or -1 if it has none
+         * @param reader  the reader, positioned at the value
+         * @throws IOException if an I/O error occurs in the reader
+         */
+        void visit(int path, int element, JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Reads the next value from reader and visits every value on one of the paths, in document order.
+     *
+     * @param reader  the reader to read the document (or one of its values) from
+     * @param visitor the visitor to hand each matched value to
+     * @throws IOException if an I/O error occurs in the reader
+     */
+    public void read(JsonReader reader, Visitor visitor) throws IOException {
+        walk(reader, root, -1, visitor);
+    }
+
+    /**
+     * Reads the next value from reader into one array per path: the value matched by path p in
+     * <code>[*]</code> element e is stored at <code>targets[p][e]</code> (index 0 for paths without
+     * <code>[*]</code>). <code>null</code> and strings that do not hold a number are stored as
+     * <code>NaN</code>, elements beyond the length of a target array are skipped.
+     *
+     * @param reader  the reader to read the document from
+     * @param targets one array per compiled path
+     * @return the number of elements, i.e. the length the target arrays need to hold every value
+     * @throws IOException if an I/O error occurs in the reader
+     */
+    public int readDoubles(JsonReader reader, final double[]... targets) throws IOException {
+        if (targets.length != paths.length) {
+            throw new IllegalArgumentException("Expected " + paths.length + " target arrays, got " + targets.length);
+        }
+        final int[] count = new int[1];
+        read(reader, new Visitor() {
+            public void visit(int path, int element, JsonReader reader) throws IOException {
+                final int index = Math.max(element, 0);
+                final double value = readDouble(reader);
+                if (index < targets[path].length) {
+                    targets[path][index] = value;
+                }
+                count[0] = Math.max(count[0], index + 1);
+            }
+        });
+        return count[0];
+    }
+
+    public int size() {
+        return paths.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(paths);
+    }
+
+    private static double readDouble(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NUMBER:
+                return reader.nextDouble();
+            case STRING:
+                try {
+                    return reader.nextDouble();
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            default:
+                reader.skipValue();
+                return Double.NaN;
+        }
+    }
+
+    private static void walk(JsonReader reader, Node node, int element, Visitor visitor) throws IOException {
+        if (node.path >= 0) {
+            visitor.visit(node.path, element, reader);
+            return;
+        }
+        final JsonReader.Token token = reader.peek();
+        if (token == JsonReader.Token.BEGIN_OBJECT && node.names != null) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final Node child = node.names.get(reader.nextName());
+                if (child == null) {
+                    reader.skipValue();
+                } else {
+                    walk(reader, child, element, visitor);
+                }
+            }
+            reader.endObject();
+        } else if (token == JsonReader.Token.BEGIN_ARRAY && (node.anyElement != null || node.elements != null)) {
+            reader.beginArray();
+            for (int i = 0; reader.hasNext(); i++) {
+                final Node child = node.anyElement != null ? node.anyElement : node.elements.get(i);
+                if (child == null) {
+                    reader.skipValue();
+                } else {
+                    walk(reader, child, node.anyElement != null ? i : element, visitor);
+                }
+            }
+            reader.endArray();
+        } else {
+            reader.skipValue();
+        }
+    }
+
+    private void add(String path, int number) {
+        Node node = root;
+        int i = 0;
+        final int length = path.length();
+        while (i < length) {
+            if (path.charAt(i) == '[') {
+                final int close = path.indexOf(']', i);
+                if (close < 0) {
+                    throw malformed(path, "missing ']'");
+                }
+                node = node.element(path.substring(i + 1, close), path);
+                i = close + 1;
+                if (i < length && path.charAt(i) == '.') {
+                    i++;
+                    if (i == length) {
+                        throw malformed(path, "empty name");
+                    }
+                }
+            } else {
+                int end = i;
+                while (end < length && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == i) {
+                    throw malformed(path, "empty name");
+                }
+                node = node.name(path.substring(i, end), path);
+                i = end;
+                if (i < length && path.charAt(i) == '.') {
+                    i++;
+                    if (i == length) {
+                        throw malformed(path, "empty name");
+                    }
+                }
+            }
+        }
+        if (node == root) {
+            throw malformed(path, "empty path");
+        }
+        if (node.path >= 0 || node.names != null || node.elements != null || node.anyElement != null) {
+            throw new IllegalArgumentException("Path " + path + " overlaps with another path");
+        }
+        node.path = number;
+    }
+
+    private static IllegalArgumentException malformed(String path, String reason) {
+        return new IllegalArgumentException("Malformed path " + path + ": " + reason);
+    }
+
+    private static class Node {
+        // number of the path ending here, -1 for inner nodes
+        int path = -1;
+        Map<String, Node> names;
+        Map<Integer, Node> elements;
+        Node anyElement;
+
+        Node name(String name, String fullPath) {
+            checkInner(fullPath);
+            if (names == null) {
+                names = new HashMap<String, Node>();
+            }
+            Node child = names.get(name);
+            if (child == null) {
+                child = new Node();
+                names.put(name, child);
+            }
+            return child;
+        }
+
+        Node element(String index, String fullPath) {
+            checkInner(fullPath);
+            if (index.equals("*")) {
+                if (elements != null) {
+                    throw new IllegalArgumentException("Path " + fullPath + " mixes [*] and [n] at the same position as another path");
+                }
+                if (anyElement == null) {
+                    anyElement = new Node();
+                }
+                return anyElement;
+            }
+            final int i;
+            try {
+                i = Integer.parseInt(index);
+            } catch (NumberFormatException e) {
+                throw malformed(fullPath, "bad index [" + index + "]");
+            }
+            if (i < 0) {
+                throw malformed(fullPath, "bad index [" + index + "]");
+            }
+            if (anyElement != null) {
+                throw new IllegalArgumentException("Path " + fullPath + " mixes [*] and [n] at the same position as another path");
+            }
+            if (elements == null) {
+                elements = new HashMap<Integer, Node>();
+            }
+            Node child = elements.get(i);
+            if (child == null) {
+                child = new Node();
+                elements.put(i, child);
+            }
+            return child;
+        }
+
+        private void checkInner(String fullPath) {
+            if (path >= 0) {
+                throw new IllegalArgumentException("Path " + fullPath + " overlaps with another path");
+            }
+        }
+    }
+}
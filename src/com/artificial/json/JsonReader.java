@@ -0,0 +1,468 @@
+package com.artificial.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a JSON document one token at a time, without building a tree of {@link JsonValue}s.
+ * <p>
+ * Callers walk the document with {@link #beginObject()}, {@link #nextName()}, {@link #nextDouble()}
+ * and so on, and pass over anything they do not need with {@link #skipValue()}, which validates the
+ * skipped input without capturing any of it. Memory use therefore depends on the nesting depth and on
+ * the values actually read, not on the size of the document:
+ * </p>
+ * <p/>
+ * <pre>
+ * reader.beginObject();
+ * while( reader.hasNext() ) {
+ *   if( reader.nextName().equals( "Open" ) ) {
+ *     open = reader.nextDouble();
+ *   } else {
+ *     reader.skipValue();
+ *   }
+ * }
+ * reader.endObject();
+ * </pre>
+ * <p>
+ * Input that does not qualify as valid JSON, or does not have the structure the caller asks for,
+ * causes a {@link ParseException} pointing at the offending character.
+ * </p>
+ */
+public class JsonReader implements Closeable {
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    // a name has been read, its value has not
+    private static final int DANGLING_NAME = 6;
+    private final Reader input;
+    private final JsonParser parser;
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+    private Token peeked;
+
+    /**
+     * The kinds of tokens returned by {@link JsonReader#peek()}.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    /**
+     * Creates a reader for the JSON text from the given reader. Characters are read in chunks into an
+     * input buffer, hence wrapping the reader in an additional <code>BufferedReader</code> likely won't
+     * improve reading performance.
+     *
+     * @param reader the reader to read the JSON text from
+     */
+    public JsonReader(Reader reader) {
+        this.input = reader;
+        this.parser = new JsonParser(reader);
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Creates a reader for the given JSON string.
+     *
+     * @param string the JSON text to read
+     */
+    public JsonReader(String string) {
+        this.input = null;
+        this.parser = new JsonParser(string);
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Creates a reader for the remaining UTF-8 encoded bytes of the given buffer, e.g. a memory-mapped
+     * file. The position of the buffer is not changed.
+     *
+     * @param bytes the buffer to read the JSON text from
+     */
+    public JsonReader(ByteBuffer bytes) {
+        this.input = null;
+        this.parser = new JsonParser(bytes);
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Creates a reader for the given UTF-8 encoded JSON text.
+     *
+     * @param bytes the JSON text to read
+     */
+    public JsonReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Interns the names read from now on in the given table, e.g. {@link JsonSymbolTable#GLOBAL} to
+     * share them with other readers. By default names are not interned, every name read creates a
+     * new <code>String</code>.
+     *
+     * @param symbols the table to intern names in, or <code>null</code> to stop interning
+     */
+    public void setSymbolTable(JsonSymbolTable symbols) {
+        parser.setSymbolTable(symbols);
+    }
+
+    /**
+     * Returns the kind of the next token without consuming it.
+     *
+     * @return the next token, {@link Token#END_DOCUMENT} after the top level value
+     * @throws IOException if an I/O error occurs in the underlying reader
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        switch (stack[stackSize - 1]) {
+            case EMPTY_DOCUMENT:
+                parser.read();
+                parser.skipWhiteSpace();
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                return peeked = peekValue();
+            case NONEMPTY_DOCUMENT:
+                parser.skipWhiteSpace();
+                if (!parser.isEndOfText()) {
+                    throw parser.error("Unexpected character");
+                }
+                return peeked = Token.END_DOCUMENT;
+            case EMPTY_ARRAY:
+                parser.skipWhiteSpace();
+                if (parser.current() == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                return peeked = peekValue();
+            case NONEMPTY_ARRAY:
+                parser.skipWhiteSpace();
+                if (parser.current() == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (!parser.readChar(',')) {
+                    throw parser.expected("',' or ']'");
+                }
+                parser.skipWhiteSpace();
+                return peeked = peekValue();
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                parser.skipWhiteSpace();
+                if (parser.current() == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (stack[stackSize - 1] == NONEMPTY_OBJECT) {
+                    if (!parser.readChar(',')) {
+                        throw parser.expected("',' or '}'");
+                    }
+                    parser.skipWhiteSpace();
+                }
+                if (parser.current() != '"') {
+                    throw parser.expected("name");
+                }
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                parser.skipWhiteSpace();
+                if (!parser.readChar(':')) {
+                    throw parser.expected("':'");
+                }
+                parser.skipWhiteSpace();
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                return peeked = peekValue();
+            default:
+                throw new IllegalStateException("JsonReader is closed");
+        }
+    }
+
+    /**
+     * Returns whether the current array or object has another element or member.
+     *
+     * @return <code>false</code> if the next token ends the current array or object
+     * @throws IOException if an I/O error occurs in the underlying reader
+     */
+    public boolean hasNext() throws IOException {
+        final Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT, "object");
+        parser.read();
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT, "'}'");
+        parser.read();
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY, "array");
+        parser.read();
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY, "']'");
+        parser.read();
+        stackSize--;
+    }
+
+    /**
+     * Consumes the name of the next member of the current object.
+     *
+     * @return the name
+     * @throws IOException if an I/O error occurs in the underlying reader
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME, "name");
+        final String name = parser.readNameInternal();
+        stack[stackSize - 1] = DANGLING_NAME;
+        return name;
+    }
+
+    /**
+     * Skips members of the current object until one with the given name. The reader is left at that
+     * member's value, or at the end of the object if there is no such member.
+     *
+     * @param name the name of the member to find
+     * @return <code>true</code> if the member was found
+     * @throws IOException if an I/O error occurs in the underlying reader
+     */
+    public boolean findName(String name) throws IOException {
+        while (peek() == Token.NAME) {
+            if (nextName().equals(name)) {
+                return true;
+            }
+            skipValue();
+        }
+        return false;
+    }
+
+    /**
+     * Consumes the next string value. Numbers are returned in their textual form.
+     *
+     * @return the string
+     * @throws IOException if an I/O error occurs in the underlying reader
+     */
+    public String nextString() throws IOException {
+        final Token token = peek();
+        final String value;
+        if (token == Token.STRING) {
+            value = parser.readStringInternal();
+        } else if (token == Token.NUMBER) {
+            value = parser.readNumberInternal();
+        } else {
+            throw parser.expected("string");
+        }
+        peeked = null;
+        return value;
+    }
+
+    /**
+     * Consumes the next number, or a string holding a number as quote responses use for their fields.
+     * Plain numbers of up to 15 or so digits are decoded straight from the input buffer, so this does
+     * not allocate.
+     *
+     * @return the number as <code>double</code>
+     * @throws IOException if an I/O error occurs in the underlying reader
+     * @throws NumberFormatException if a string value does not hold a number
+     */
+    public double nextDouble() throws IOException {
+        final Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw parser.expected("number");
+        }
+        // consumed even if the string turns out not to hold a number
+        peeked = null;
+        return token == Token.NUMBER ? parser.readDoubleInternal() : parser.readStringAsDoubleInternal();
+    }
+
+    /**
+     * Consumes the next number (or numeric string), which must be an integral <code>long</code>.
+     *
+     * @return the number as <code>long</code>
+     * @throws IOException if an I/O error occurs in the underlying reader
+     * @throws NumberFormatException if the value is not an integral number in the range of <code>long</code>
+     */
+    public long nextLong() throws IOException {
+        return Long.parseLong(nextNumberText());
+    }
+
+    /**
+     * Consumes the next number (or numeric string), which must be an integral <code>int</code>.
+     *
+     * @return the number as <code>int</code>
+     * @throws IOException if an I/O error occurs in the underlying reader
+     * @throws NumberFormatException if the value is not an integral number in the range of <code>int</code>
+     */
+    public int nextInt() throws IOException {
+        return Integer.parseInt(nextNumberText());
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN, "boolean");
+        return (parser.current() == 't' ? parser.readTrue() : parser.readFalse()).asBoolean();
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL, "null");
+        parser.readNull();
+    }
+
+    /**
+     * Consumes the next value as a tree, so callers can stream over a large document and still
+     * materialize the small parts they need, e.g. one element of a long array.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs in the underlying reader
+     */
+    public JsonValue nextValue() throws IOException {
+        final Token token = peek();
+        if (token == Token.NAME || token == Token.END_OBJECT || token == Token.END_ARRAY || token == Token.END_DOCUMENT) {
+            throw parser.expected("value");
+        }
+        peeked = null;
+        return parser.readValue();
+    }
+
+    /**
+     * Skips the next value, including everything nested in it. If the next token is a name, the member
+     * with that name is skipped. Skipped strings and numbers are validated but not captured.
+     *
+     * @throws IOException if an I/O error occurs in the underlying reader
+     */
+    public void skipValue() throws IOException {
+        if (peek() == Token.NAME) {
+            skipName();
+        }
+        final Token token = peek();
+        if (token == Token.END_OBJECT || token == Token.END_ARRAY || token == Token.END_DOCUMENT) {
+            //the closing bracket belongs to the caller
+            throw parser.expected("value");
+        }
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    skipName();
+                    break;
+                case STRING:
+                    parser.skipStringInternal();
+                    peeked = null;
+                    break;
+                case NUMBER:
+                    parser.skipNumberInternal();
+                    peeked = null;
+                    break;
+                case BOOLEAN:
+                    nextBoolean();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                default:
+                    throw parser.expected("value");
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Closes the underlying reader, if there is one.
+     */
+    @Override
+    public void close() throws IOException {
+        peeked = null;
+        stack[0] = -1;
+        stackSize = 1;
+        if (input != null) {
+            input.close();
+        }
+    }
+
+    private Token peekValue() {
+        switch (parser.current()) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                return Token.NUMBER;
+            default:
+                throw parser.expected("value");
+        }
+    }
+
+    private String nextNumberText() throws IOException {
+        final Token token = peek();
+        final String text;
+        if (token == Token.NUMBER) {
+            text = parser.readNumberInternal();
+        } else if (token == Token.STRING) {
+            text = parser.readStringInternal();
+        } else {
+            throw parser.expected("number");
+        }
+        peeked = null;
+        return text;
+    }
+
+    private void skipName() throws IOException {
+        expect(Token.NAME, "name");
+        parser.skipStringInternal();
+        stack[stackSize - 1] = DANGLING_NAME;
+    }
+
+    // consumes the peeked token, which must be the given one
+    private void expect(Token token, String description) throws IOException {
+        if (peek() != token) {
+            throw parser.expected(description);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            final int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+}
@@ -0,0 +1,172 @@
+package com.artificial.json;
+
+import java.util.Arrays;
+
+/**
+ * Canonical instances of member names, so that a name repeated throughout a document (or across
+ * documents) is held by one <code>String</code>. The parser looks names up by the hash of their chars
+ * in its input buffer and only creates a <code>String</code> for a name it has not seen before.
+ * <p>
+ * Names are only interned by readers a table is passed to, see {@link JsonReader#setSymbolTable},
+ * e.g. {@link #GLOBAL} to share names between all documents read with it. A table stops taking new
+ * names once it holds <code>maxSize</code> of them, names beyond that and names longer than 64 chars
+ * are not interned and cost no more than without a table.
+ * </p>
+ * <p>
+ * This class is thread-safe, lookups of names already in the table do not lock.
+ * </p>
+ */
+public final class JsonSymbolTable {
+    /**
+     * A table shared by all parsers it is passed to, for names that recur across documents such as
+     * the fields of quotes.
+     */
+    public static final JsonSymbolTable GLOBAL = new JsonSymbolTable(4096);
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final int MIN_CAPACITY = 64; // must be a power of two
+    private final int maxSize;
+    // replaced as a whole when growing, slots are only ever filled
+    private volatile Symbol[] slots = new Symbol[MIN_CAPACITY];
+    private int size;
+    // set once size reaches maxSize, so misses skip the lock and the copy of their chars
+    private volatile boolean full;
+
+    /**
+     * Creates a table for up to 1024 names.
+     */
+    public JsonSymbolTable() {
+        this(1024);
+    }
+
+    /**
+     * Creates a table for up to the given number of names.
+     *
+     * @param maxSize the number of names after which new names are no longer interned
+     */
+    public JsonSymbolTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the canonical instance of the given name.
+     *
+     * @param name the name to look up
+     * @return the instance in this table, or <code>name</code> itself if it was not interned
+     */
+    public String intern(String name) {
+        if (name.length() > MAX_NAME_LENGTH) {
+            return name;
+        }
+        final int hash = name.hashCode();
+        final Symbol[] table = slots;
+        final int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = slot + 1 & mask) {
+            final Symbol candidate = table[slot];
+            if (candidate == null) {
+                return full ? name : add(name.toCharArray(), hash, name);
+            }
+            if (candidate.hash == hash && candidate.name.equals(name)) {
+                return candidate.name;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of names in this table.
+     *
+     * @return the number of interned names
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /*
+     * The canonical instance of the name in chars[offset, offset + length), a String is only
+     * created if the name is not in the table yet
+     */
+    String lookup(char[] chars, int offset, int length) {
+        if (length > MAX_NAME_LENGTH) {
+            return new String(chars, offset, length);
+        }
+        // same as String.hashCode()
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        final Symbol[] table = slots;
+        final int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = slot + 1 & mask) {
+            final Symbol candidate = table[slot];
+            if (candidate == null) {
+                return full ? new String(chars, offset, length) : add(Arrays.copyOfRange(chars, offset, offset + length), hash, null);
+            }
+            if (candidate.hash == hash && Arrays.equals(candidate.chars, 0, candidate.chars.length, chars, offset, offset + length)) {
+                return candidate.name;
+            }
+        }
+    }
+
+    // name may be null, it is then created from chars
+    private synchronized String add(char[] chars, int hash, String name) {
+        Symbol[] table = slots;
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        // another thread may have added the name since the lock-free lookup
+        for (Symbol candidate; (candidate = table[slot]) != null; slot = slot + 1 & mask) {
+            if (candidate.hash == hash && Arrays.equals(candidate.chars, chars)) {
+                return candidate.name;
+            }
+        }
+        if (name == null) {
+            name = new String(chars);
+        }
+        if (size >= maxSize) {
+            return name;
+        }
+        if ((size + 1) * 4 > table.length * 3) {
+            table = grow(table);
+            mask = table.length - 1;
+            slot = spread(hash) & mask;
+            while (table[slot] != null) {
+                slot = slot + 1 & mask;
+            }
+        }
+        table[slot] = new Symbol(chars, hash, name);
+        size++;
+        slots = table;
+        full = size >= maxSize;
+        return name;
+    }
+
+    private static Symbol[] grow(Symbol[] table) {
+        final Symbol[] grown = new Symbol[table.length << 1];
+        final int mask = grown.length - 1;
+        for (final Symbol symbol : table) {
+            if (symbol != null) {
+                int slot = spread(symbol.hash) & mask;
+                while (grown[slot] != null) {
+                    slot = slot + 1 & mask;
+                }
+                grown[slot] = symbol;
+            }
+        }
+        return grown;
+    }
+
+    private static int spread(int hash) {
+        return hash * 0x9E3779B9 >>> 16;
+    }
+
+    // the chars are kept to compare against the parser's buffer without going through String
+    private static final class Symbol {
+        final char[] chars;
+        final int hash;
+        final String name;
+
+        Symbol(char[] chars, int hash, String name) {
+            this.chars = chars;
+            this.hash = hash;
+            this.name = name;
+        }
+    }
+}
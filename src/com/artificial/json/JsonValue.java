@@ -11,6 +11,7 @@
 package com.artificial.json;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Represents a JSON value. This can be a JSON <strong>object</strong>, an <strong> array</strong>,
@@ -96,6 +97,34 @@ public abstract class JsonValue implements Serializable {
         }
     }
 
+    /**
+     * Reads a JSON value from the remaining UTF-8 encoded bytes of the given buffer, e.g. a downloaded
+     * body or a memory-mapped file. The position of the buffer is not changed.
+     *
+     * @param bytes the buffer that contains the JSON value
+     * @return the JSON value that has been read
+     * @throws ParseException if the input is not havePayment JSON
+     */
+    public static JsonValue readFrom(ByteBuffer bytes) {
+        try {
+            return new JsonParser(bytes).parse();
+        } catch (IOException exception) {
+            // JsonParser does not throw IOException for byte input
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Reads a JSON value from the given UTF-8 encoded bytes.
+     *
+     * @param bytes the bytes that contain the JSON value
+     * @return the JSON value that has been read
+     * @throws ParseException if the input is not havePayment JSON
+     */
+    public static JsonValue readFrom(byte[] bytes) {
+        return readFrom(ByteBuffer.wrap(bytes));
+    }
+
     /**
      * Returns a JsonValue instance that represents the given <code>int</code> value.
      *
@@ -103,7 +132,7 @@ public abstract class JsonValue implements Serializable {
      * @return a JSON value that represents the given value
      */
     public static JsonValue valueOf(int value) {
-        return new JsonNumber(Integer.toString(value, 10));
+        return new JsonNumber(Integer.toString(value, 10), value);
     }
 
     /**
@@ -113,7 +142,7 @@ public abstract class JsonValue implements Serializable {
      * @return a JSON value that represents the given value
      */
     public static JsonValue valueOf(long value) {
-        return new JsonNumber(Long.toString(value, 10));
+        return new JsonNumber(Long.toString(value, 10), value);
     }
 
     /**
@@ -139,7 +168,7 @@ public abstract class JsonValue implements Serializable {
         if (Double.isInfinite(value) || Double.isNaN(value)) {
             throw new IllegalArgumentException("Infinite and NaN values not permitted in JSON");
         }
-        return new JsonNumber(cutOffPointZero(Double.toString(value)));
+        return new JsonNumber(cutOffPointZero(Double.toString(value)), value);
     }
 
     /**
@@ -162,7 +191,7 @@ public abstract class JsonValue implements Serializable {
         return value ? TRUE : FALSE;
     }
 
-    private static String cutOffPointZero(String string) {
+    static String cutOffPointZero(String string) {
         if (string.endsWith(".0")) {
             return string.substring(0, string.length() - 2);
         }
@@ -356,18 +385,33 @@ public abstract class JsonValue implements Serializable {
     }
 
     /**
-     * Writes the JSON representation for this object to the given writer.
+     * Writes the JSON representation for this object to the given writer in its minimal form,
+     * without any additional whitespace.
      * <p>
-     * Single elements are passed directly to the given writer. Therefore, if the writer is not
-     * buffered, wrapping it in a {@link BufferedWriter BufferedWriter} can drastically
-     * improve writing performance.
+     * The text is collected in an internal buffer and passed to the given writer in chunks,
+     * hence wrapping the writer in an additional <code>BufferedWriter</code> likely won't improve
+     * writing performance. The writer is not flushed.
      * </p>
      *
      * @param writer the writer to write this value to
      * @throws IOException if an I/O error occurs in the writer
      */
     public void writeTo(Writer writer) throws IOException {
-        write(new JsonWriter(writer));
+        writeTo(writer, WriterConfig.MINIMAL);
+    }
+
+    /**
+     * Writes the JSON representation for this object to the given writer using the given
+     * formatting, see {@link #writeTo(Writer)}.
+     *
+     * @param writer the writer to write this value to
+     * @param config a configuration that controls the formatting or <code>null</code> for the minimal form
+     * @throws IOException if an I/O error occurs in the writer
+     */
+    public void writeTo(Writer writer, WriterConfig config) throws IOException {
+        JsonWriter jsonWriter = (config == null ? WriterConfig.MINIMAL : config).createWriter(writer);
+        write(jsonWriter);
+        jsonWriter.flush();
     }
 
     @Override
@@ -401,10 +445,20 @@ public abstract class JsonValue implements Serializable {
      */
     @Override
     public String toString() {
+        return toString(WriterConfig.MINIMAL);
+    }
+
+    /**
+     * Returns the JSON string for this value using the given formatting, e.g.
+     * {@link WriterConfig#PRETTY_PRINT}.
+     *
+     * @param config a configuration that controls the formatting or <code>null</code> for the minimal form
+     * @return a JSON string that represents this value
+     */
+    public String toString(WriterConfig config) {
         StringWriter stringWriter = new StringWriter();
-        JsonWriter jsonWriter = new JsonWriter(stringWriter);
         try {
-            write(jsonWriter);
+            writeTo(stringWriter, config);
         } catch (IOException exception) {
             // StringWriter does not throw IOExceptions
             throw new RuntimeException(exception);
@@ -13,70 +13,148 @@ package com.artificial.json;
 import java.io.IOException;
 import java.io.Writer;
 
+/*
+ * Writes JSON text into a char buffer that is passed on to the underlying writer in chunks, see
+ * flush(). The formatting between tokens is left to the protected hooks, which PrettyPrint overrides.
+ */
 class JsonWriter {
-    private static final int CONTROL_CHARACTERS_START = 0x0000;
+    private static final int BUFFER_SIZE = 1024;
+    // longest output of writeNumber(long) and of the fast path of writeNumber(double)
+    private static final int MAX_NUMBER_LENGTH = 48;
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
     private static final int CONTROL_CHARACTERS_END = 0x001f;
-    private static final char[] QUOT_CHARS = {'\\', '"'};
-    private static final char[] BS_CHARS = {'\\', '\\'};
-    private static final char[] LF_CHARS = {'\\', 'n'};
-    private static final char[] CR_CHARS = {'\\', 'r'};
-    private static final char[] TAB_CHARS = {'\\', 't'};
+    // replacement of every ASCII char that needs escaping, null for the others
+    private static final char[][] ESCAPES = new char[0x80][];
     // In JavaScript, U+2028 and U+2029 characters count as line endings and must be encoded.
     // http://stackoverflow.com/questions/2965293/javascript-parse-error-on-u2028-unicode-character
     private static final char[] UNICODE_2028_CHARS = {'\\', 'u', '2', '0', '2', '8'};
     private static final char[] UNICODE_2029_CHARS = {'\\', 'u', '2', '0', '2', '9'};
     private static final char[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
             'a', 'b', 'c', 'd', 'e', 'f'};
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_EXACT_POWER_OF_TEN; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+        for (int ch = 0; ch <= CONTROL_CHARACTERS_END; ch++) {
+            ESCAPES[ch] = new char[]{'\\', 'u', '0', '0', HEX_DIGITS[ch >> 4 & 0x000f], HEX_DIGITS[ch & 0x000f]};
+        }
+        ESCAPES['"'] = new char[]{'\\', '"'};
+        ESCAPES['\\'] = new char[]{'\\', '\\'};
+        ESCAPES['\n'] = new char[]{'\\', 'n'};
+        ESCAPES['\r'] = new char[]{'\\', 'r'};
+        ESCAPES['\t'] = new char[]{'\\', 't'};
+    }
+
     protected final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int fill;
 
     JsonWriter(Writer writer) {
         this.writer = writer;
     }
 
-    private static char[] getReplacementChars(char ch) {
-        char[] replacement = null;
-        if (ch == '"') {
-            replacement = QUOT_CHARS;
-        } else if (ch == '\\') {
-            replacement = BS_CHARS;
-        } else if (ch == '\n') {
-            replacement = LF_CHARS;
-        } else if (ch == '\r') {
-            replacement = CR_CHARS;
-        } else if (ch == '\t') {
-            replacement = TAB_CHARS;
-        } else if (ch == '\u2028') {
-            replacement = UNICODE_2028_CHARS;
-        } else if (ch == '\u2029') {
-            replacement = UNICODE_2029_CHARS;
-        } else if (ch >= CONTROL_CHARACTERS_START && ch <= CONTROL_CHARACTERS_END) {
-            replacement = new char[]{'\\', 'u', '0', '0', '0', '0'};
-            replacement[4] = HEX_DIGITS[ch >> 4 & 0x000f];
-            replacement[5] = HEX_DIGITS[ch & 0x000f];
-        }
-        return replacement;
+    /*
+     * Passes the buffered text on to the writer, which is not flushed itself
+     */
+    void flush() throws IOException {
+        writer.write(buffer, 0, fill);
+        fill = 0;
     }
 
     void write(String string) throws IOException {
-        writer.write(string);
+        write(string, 0, string.length());
+    }
+
+    void write(char ch) throws IOException {
+        if (fill == buffer.length) {
+            flush();
+        }
+        buffer[fill++] = ch;
+    }
+
+    void write(char[] chars) throws IOException {
+        if (fill + chars.length > buffer.length) {
+            flush();
+            if (chars.length > buffer.length) {
+                writer.write(chars);
+                return;
+            }
+        }
+        System.arraycopy(chars, 0, buffer, fill, chars.length);
+        fill += chars.length;
     }
 
     void writeString(String string) throws IOException {
-        writer.write('"');
+        write('"');
         int length = string.length();
         int start = 0;
-        char[] chars = new char[length];
-        string.getChars(0, length, chars, 0);
         for (int index = 0; index < length; index++) {
-            char[] replacement = getReplacementChars(chars[index]);
+            char ch = string.charAt(index);
+            char[] replacement;
+            if (ch < 0x80) {
+                replacement = ESCAPES[ch];
+            } else if (ch == '\u2028') {
+                replacement = UNICODE_2028_CHARS;
+            } else if (ch == '\u2029') {
+                replacement = UNICODE_2029_CHARS;
+            } else {
+                replacement = null;
+            }
             if (replacement != null) {
-                writer.write(chars, start, index - start);
-                writer.write(replacement);
+                write(string, start, index - start);
+                write(replacement);
                 start = index + 1;
             }
         }
-        writer.write(chars, start, length - start);
-        writer.write('"');
+        write(string, start, length - start);
+        write('"');
+    }
+
+    void writeNumber(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return;
+        }
+        reserve(MAX_NUMBER_LENGTH);
+        if (value < 0) {
+            buffer[fill++] = '-';
+            value = -value;
+        }
+        writeDecimal(value, 0);
+    }
+
+    /*
+     * Writes value in the same form as JsonValue.valueOf(double). Values in the range that
+     * Double.toString() writes without an exponent are formatted straight into the buffer, as the
+     * fewest fraction digits whose decimal parses back to value.
+     */
+    void writeNumber(double value) throws IOException {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Infinite and NaN values not permitted in JSON");
+        }
+        double magnitude = Math.abs(value);
+        if (magnitude >= 1e-3 && magnitude < 1e7) {
+            for (int scale = 0; scale <= MAX_EXACT_POWER_OF_TEN; scale++) {
+                double scaled = Math.rint(magnitude * POWERS_OF_TEN[scale]);
+                if (scaled >= MAX_EXACT_SIGNIFICAND) {
+                    break;
+                }
+                // both operands are exact, so the quotient is the double the decimal parses to
+                if (scaled / POWERS_OF_TEN[scale] == magnitude) {
+                    reserve(MAX_NUMBER_LENGTH);
+                    if (value < 0) {
+                        buffer[fill++] = '-';
+                    }
+                    writeDecimal((long) scaled, scale);
+                    return;
+                }
+            }
+        }
+        write(JsonValue.cutOffPointZero(Double.toString(value)));
     }
 
     protected void writeObject(JsonObject object) throws IOException {
@@ -86,6 +164,7 @@ class JsonWriter {
             if (!first) {
                 writeObjectValueSeparator();
             }
+            writeElementStart();
             writeString(member.getName());
             writeNameValueSeparator();
             member.getValue().write(this);
@@ -95,19 +174,19 @@ class JsonWriter {
     }
 
     protected void writeBeginObject() throws IOException {
-        writer.write('{');
+        write('{');
     }
 
     protected void writeEndObject() throws IOException {
-        writer.write('}');
+        write('}');
     }
 
     protected void writeNameValueSeparator() throws IOException {
-        writer.write(':');
+        write(':');
     }
 
     protected void writeObjectValueSeparator() throws IOException {
-        writer.write(',');
+        write(',');
     }
 
     protected void writeArray(JsonArray array) throws IOException {
@@ -117,6 +196,7 @@ class JsonWriter {
             if (!first) {
                 writeArrayValueSeparator();
             }
+            writeElementStart();
             value.write(this);
             first = false;
         }
@@ -124,15 +204,69 @@ class JsonWriter {
     }
 
     protected void writeBeginArray() throws IOException {
-        writer.write('[');
+        write('[');
     }
 
     protected void writeEndArray() throws IOException {
-        writer.write(']');
+        write(']');
     }
 
     protected void writeArrayValueSeparator() throws IOException {
-        writer.write(',');
+        write(',');
+    }
+
+    /*
+     * Called before every member of an object and every element of an array
+     */
+    protected void writeElementStart() throws IOException {
+    }
+
+    private void write(String string, int offset, int length) throws IOException {
+        if (fill + length > buffer.length) {
+            flush();
+            if (length > buffer.length) {
+                writer.write(string, offset, length);
+                return;
+            }
+        }
+        string.getChars(offset, offset + length, buffer, fill);
+        fill += length;
+    }
+
+    private void reserve(int length) throws IOException {
+        if (fill + length > buffer.length) {
+            flush();
+        }
+    }
+
+    /*
+     * Writes significand * 10^-scale, the caller reserves the space
+     */
+    private void writeDecimal(long significand, int scale) {
+        while (scale > 0 && significand % 10 == 0) {
+            significand /= 10;
+            scale--;
+        }
+        int digits = 1;
+        for (long rest = significand / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        // a fraction without integer digits gets a leading "0." and zeros up to its first digit
+        int length = scale == 0 ? digits : Math.max(digits, scale + 1) + 1;
+        int end = fill + length;
+        int position = end;
+        for (int i = 0; i < scale; i++) {
+            buffer[--position] = (char) ('0' + significand % 10);
+            significand /= 10;
+        }
+        if (scale > 0) {
+            buffer[--position] = '.';
+        }
+        do {
+            buffer[--position] = (char) ('0' + significand % 10);
+            significand /= 10;
+        } while (position > fill);
+        fill = end;
     }
 
 }
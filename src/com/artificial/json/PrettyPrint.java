@@ -0,0 +1,116 @@
+package com.artificial.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Enables human readable JSON output by inserting whitespace between values: every member and
+ * element goes on a line of its own, indented by its depth, and names are followed by
+ * <code>": "</code>. Empty objects and arrays are written as <code>{}</code> and <code>[]</code>.
+ */
+public class PrettyPrint extends WriterConfig {
+    private final char[] indentChars;
+
+    private PrettyPrint(char[] indentChars) {
+        this.indentChars = indentChars;
+    }
+
+    /**
+     * Indents every level with the given number of spaces.
+     *
+     * @param number the number of spaces to use
+     * @return a PrettyPrint configuration
+     */
+    public static PrettyPrint indentWithSpaces(int number) {
+        if (number < 0) {
+            throw new IllegalArgumentException("number is negative");
+        }
+        char[] chars = new char[number];
+        Arrays.fill(chars, ' ');
+        return new PrettyPrint(chars);
+    }
+
+    /**
+     * Indents every level with a tab character.
+     *
+     * @return a PrettyPrint configuration
+     */
+    public static PrettyPrint indentWithTabs() {
+        return new PrettyPrint(new char[]{'\t'});
+    }
+
+    @Override
+    JsonWriter createWriter(Writer writer) {
+        return new PrettyPrintWriter(writer, indentChars);
+    }
+
+    private static class PrettyPrintWriter extends JsonWriter {
+        private final char[] indentChars;
+        private int indent;
+        // the innermost object or array has no members or elements so far
+        private boolean empty;
+
+        private PrettyPrintWriter(Writer writer, char[] indentChars) {
+            super(writer);
+            this.indentChars = indentChars;
+        }
+
+        @Override
+        protected void writeBeginObject() throws IOException {
+            write('{');
+            begin();
+        }
+
+        @Override
+        protected void writeEndObject() throws IOException {
+            end();
+            write('}');
+        }
+
+        @Override
+        protected void writeNameValueSeparator() throws IOException {
+            write(':');
+            write(' ');
+        }
+
+        @Override
+        protected void writeBeginArray() throws IOException {
+            write('[');
+            begin();
+        }
+
+        @Override
+        protected void writeEndArray() throws IOException {
+            end();
+            write(']');
+        }
+
+        @Override
+        protected void writeElementStart() throws IOException {
+            writeNewLine();
+            empty = false;
+        }
+
+        private void begin() {
+            indent++;
+            empty = true;
+        }
+
+        // the enclosing object or array has at least this value
+        private void end() throws IOException {
+            indent--;
+            if (!empty) {
+                writeNewLine();
+            }
+            empty = false;
+        }
+
+        private void writeNewLine() throws IOException {
+            write('\n');
+            for (int i = 0; i < indent; i++) {
+                write(indentChars);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.artificial.json;
+
+import java.io.Writer;
+
+/**
+ * Controls the formatting of the JSON output, see {@link JsonValue#writeTo(Writer, WriterConfig)}
+ * and {@link JsonGenerator}.
+ */
+public abstract class WriterConfig {
+    /**
+     * Writes JSON in its minimal form, without any additional whitespace. This is the default.
+     */
+    public static final WriterConfig MINIMAL = new WriterConfig() {
+        @Override
+        JsonWriter createWriter(Writer writer) {
+            return new JsonWriter(writer);
+        }
+    };
+
+    /**
+     * Writes JSON in pretty-print, with each value on a separate line and an indentation of two
+     * spaces.
+     */
+    public static final WriterConfig PRETTY_PRINT = PrettyPrint.indentWithSpaces(2);
+
+    abstract JsonWriter createWriter(Writer writer);
+}
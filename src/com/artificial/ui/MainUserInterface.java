@@ -1,9 +1,11 @@
 package com.artificial.ui;
 
+import com.artificial.Debug;
 import com.artificial.MarketIndex;
 import com.artificial.Portfolio;
 import com.artificial.RiskFreeAsset;
 import com.artificial.Stock;
+import com.artificial.StockLoader;
 import org.math.plot.Plot2DPanel;
 
 import javax.swing.*;
@@ -13,8 +15,14 @@ import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.math.RoundingMode;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class MainUserInterface extends JFrame {
     private static final Map<String, Stock> loadedStocks = new HashMap<>();
@@ -38,10 +46,57 @@ public class MainUserInterface extends JFrame {
     private JScrollPane graphScrollPane;
 
     public MainUserInterface() {
+        this(prefetchPresets());
+    }
+
+    /**
+     * Starts fetching the quotes of every preset market index and risk-free asset in the background
+     */
+    public static CompletableFuture<Void> prefetchPresets() {
+        final List<Stock> presets = new ArrayList<>(Arrays.asList(MarketIndex.VALUES));
+        presets.addAll(Arrays.asList(RiskFreeAsset.VALUES));
+        return StockLoader.prefetch(presets.toArray(new Stock[0]));
+    }
+
+    /**
+     * @param presetsLoaded completes once the preset market indices and risk-free assets have fetched their quotes
+     */
+    public MainUserInterface(final CompletableFuture<Void> presetsLoaded) {
         NUMBER_FORMAT.setMaximumFractionDigits(2);
         NUMBER_FORMAT.setRoundingMode(RoundingMode.HALF_UP);
         initComponents();
         this.setVisible(true);
+        //isLoaded() may still fetch a quote, so failed presets are found on the completing pool thread
+        presetsLoaded.whenComplete((ignored, error) -> {
+            final Set<Stock> unloaded = new HashSet<>();
+            for (final Stock preset : MarketIndex.VALUES) {
+                if (!preset.isLoaded()) {
+                    unloaded.add(preset);
+                }
+            }
+            for (final Stock preset : RiskFreeAsset.VALUES) {
+                if (!preset.isLoaded()) {
+                    unloaded.add(preset);
+                }
+            }
+            SwingUtilities.invokeLater(() -> removeUnloadedPresets(unloaded));
+        });
+    }
+
+    private void removeUnloadedPresets(final Set<Stock> unloaded) {
+        for (final CustomPresetCombo combo : new CustomPresetCombo[]{riskFreeAssetCombo, marketIndexCombo}) {
+            for (int i = combo.getItemCount() - 1; i >= 0; i--) {
+                if (unloaded.contains(combo.getItemAt(i).getObject())) {
+                    combo.removeItemAt(i);
+                }
+            }
+            //names replace the symbols shown while loading
+            combo.repaint();
+        }
+        final ItemWrapper selected = (ItemWrapper) marketIndexCombo.getSelectedItem();
+        if (unloaded.contains(selectedMarketIndex) && selected != null && selected.getObject() instanceof MarketIndex) {
+            selectedMarketIndex = (MarketIndex) selected.getObject();
+        }
     }
 
     private void assetAddButtonActionPerformed() {
@@ -50,15 +105,41 @@ public class MainUserInterface extends JFrame {
         if (symbol.equalsIgnoreCase("null")) {
             return;
         }
-        final Stock stock = new Stock(symbol);
-        if (!stock.isLoaded()) {
-            JOptionPane.showMessageDialog(this, "Failed to load asset with symbol " + symbol + "!", "Error loading asset", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        final DefaultTableModel model = (DefaultTableModel) stocksAddedTable.getModel();
-        model.addRow(new Object[]{stock.getSymbol(), stock.getName(), stock.getBeta(selectedMarketIndex), "N/A"});
-        loadedStocks.put(symbol, stock);
-        portfolio.addStock(stock);
+        final MarketIndex marketIndex = selectedMarketIndex;
+        //quote and history downloads, beta included, stay off the EDT, only the table update runs on it
+        final double[] beta = new double[1];
+        Stock.loadAsync(symbol).thenApply(stock -> {
+            if (stock.isLoaded()) {
+                beta[0] = stock.getBeta(marketIndex);
+            }
+            return stock;
+        }).whenComplete((stock, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null || !stock.isLoaded()) {
+                JOptionPane.showMessageDialog(this, "Failed to load asset with symbol " + symbol + "!", "Error loading asset", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            final DefaultTableModel model = (DefaultTableModel) stocksAddedTable.getModel();
+            model.addRow(new Object[]{stock.getSymbol(), stock.getName(), beta[0], "N/A"});
+            loadedStocks.put(symbol, stock);
+            portfolio.addStock(stock);
+            if (marketIndex != selectedMarketIndex) {
+                //the index changed while loading, after the other rows were updated
+                updateBeta(stock, selectedMarketIndex);
+            }
+        }));
+    }
+
+    //computes the beta of stock on the loader's pool (it may download histories), then sets it in the stock's row
+    private void updateBeta(final Stock stock, final MarketIndex marketIndex) {
+        StockLoader.supplyAsync(() -> stock.getBeta(marketIndex)).thenAccept(beta -> SwingUtilities.invokeLater(() -> {
+            final DefaultTableModel model = (DefaultTableModel) stocksAddedTable.getModel();
+            //rows may have been deleted and the index changed again meanwhile
+            for (int row = 0; marketIndex == selectedMarketIndex && row < model.getRowCount(); row++) {
+                if (stock.getSymbol().equals(model.getValueAt(row, 0))) {
+                    model.setValueAt(beta, row, 2);
+                }
+            }
+        }));
     }
 
     private void marketIndexComboActionPerformed() {
@@ -73,8 +154,7 @@ public class MainUserInterface extends JFrame {
             final DefaultTableModel model = (DefaultTableModel) stocksAddedTable.getModel();
             for (int row = 0; row < model.getRowCount(); row++) {
                 final String symbol = (String) model.getValueAt(row, 0);
-                final Stock stock = loadedStocks.get(symbol);
-                model.setValueAt(stock.getBeta(selectedMarketIndex), row, 2);
+                updateBeta(loadedStocks.get(symbol), curr);
             }
         }
     }
@@ -82,18 +162,33 @@ public class MainUserInterface extends JFrame {
     private void computePortfolioButtonActionPerformed() {
         final Plot2DPanel plot = new Plot2DPanel();
         plot.setAxisLabels("Std. Deviation", "Return");
-        portfolio.efficientFrontier(plot);
-        graphScrollPane.setViewportView(plot);
-        final ItemWrapper riskFree = (ItemWrapper) riskFreeAssetCombo.getSelectedItem();
-        if (riskFree.getObject() instanceof RiskFreeAsset) {
-            portfolio.optimizationOptimalRiskyPortfolio((RiskFreeAsset) riskFree.getObject(), plot);
-            final DefaultTableModel tableModel = (DefaultTableModel) stocksAddedTable.getModel();
-            final Map<Stock, Double> stockWeights = portfolio.getStockWeights();
-            for (int i = 0; i < tableModel.getRowCount(); i++) {
-                final String symbol = (String) tableModel.getValueAt(i, 0);
-                final double weight = stockWeights.get(loadedStocks.get(symbol)) * 100;
-                tableModel.setValueAt(NUMBER_FORMAT.format(weight) + "%", i, 3);
+        try {
+            portfolio.efficientFrontier(plot);
+            graphScrollPane.setViewportView(plot);
+            final ItemWrapper riskFree = (ItemWrapper) riskFreeAssetCombo.getSelectedItem();
+            if (riskFree.getObject() instanceof RiskFreeAsset) {
+                portfolio.optimizationOptimalRiskyPortfolio((RiskFreeAsset) riskFree.getObject(), plot);
+                final DefaultTableModel tableModel = (DefaultTableModel) stocksAddedTable.getModel();
+                final Map<Stock, Double> stockWeights = portfolio.getStockWeights();
+                for (int i = 0; i < tableModel.getRowCount(); i++) {
+                    final String symbol = (String) tableModel.getValueAt(i, 0);
+                    final double weight = stockWeights.get(loadedStocks.get(symbol)) * 100;
+                    tableModel.setValueAt(NUMBER_FORMAT.format(weight) + "%", i, 3);
+                }
             }
+        } catch (ArithmeticException e) {
+            //a singular covariance matrix, e.g. more assets than monthly returns to estimate it from
+            Debug.info("Failed to optimize the portfolio: " + e.getMessage());
+            final int assets = portfolio.getStockWeights().size();
+            String rank;
+            try {
+                rank = String.valueOf(portfolio.getCovarianceRank());
+            } catch (ArithmeticException notSemiDefinite) {
+                rank = "unknown";
+            }
+            JOptionPane.showMessageDialog(this, "The covariance matrix of the " + assets + " assets has rank " + rank
+                    + ", so the portfolio cannot be optimized.\nRemove assets that move together or use fewer assets than months of history.",
+                    "Error computing portfolio", JOptionPane.ERROR_MESSAGE);
         }
     }
 
@@ -105,19 +200,15 @@ public class MainUserInterface extends JFrame {
         assetAddButton = new JButton();
         label1 = new JLabel();
         riskFreeAssetCombo = new CustomPresetCombo();
+        //presets are listed right away, the ones that fail to load are removed in removeUnloadedPresets()
         for (RiskFreeAsset riskFree : RiskFreeAsset.VALUES) {
-            if (riskFree.isLoaded()) {
-                riskFreeAssetCombo.addItem(new ItemWrapper(riskFree));
-            }
+            riskFreeAssetCombo.addItem(new ItemWrapper(riskFree));
         }
         riskFreeAssetCombo.setSelectedIndex(0);
         label2 = new JLabel();
         marketIndexCombo = new CustomPresetCombo();
         for (MarketIndex marketIndex : MarketIndex.VALUES) {
-            if (marketIndex.isLoaded()) {
-                if (selectedMarketIndex == null) selectedMarketIndex = marketIndex;
-                marketIndexCombo.addItem(new ItemWrapper(marketIndex));
-            }
+            marketIndexCombo.addItem(new ItemWrapper(marketIndex));
         }
         marketIndexCombo.setSelectedIndex(0);
         panel3 = new JPanel();